@@ -26,6 +26,7 @@ public abstract class Cell {
     protected boolean attached = false;
     protected boolean isChanged;
     protected Position myPosition;
+    protected int myIndex;
 
     public Cell(SimulationData simData, Integer initialState){
         myCurrState = initialState;
@@ -44,6 +45,46 @@ public abstract class Cell {
      */
     public abstract void updateCell();
 
+    /**
+     * This method is used by the propose/commit update mode instead of updateCell(). A cell that wants to move
+     * returns the cell it would like to move to (or act on), without changing any state.  It may be called from
+     * several threads at once, so it should only read the current states of the cell and its neighbors.  Cells
+     * that never move keep this default.
+     * @return the target cell of the move, or null if the cell does not want to move
+     */
+    public Cell proposeMove() {
+        return null;
+    }
+
+    /**
+     * This method is used by the propose/commit update mode to apply the outcome of a proposal.  It is called with
+     * the proposed target when the move won arbitration, and with null when the cell made no proposal or lost, in
+     * which case the cell should behave as if it had nowhere to go.
+     * @param target the cell the move goes to, or null if the cell stays where it is
+     */
+    public void commitMove(Cell target) {
+    }
+
+    /**
+     * This method is used by the batch relocation update mode, where every agent that wants to leave is paired
+     * with a random empty cell of the grid in one sweep and moved there with commitMove().  Like proposeMove(), it
+     * may be called from several threads at once and should only read current states.
+     * @return true if the cell holds an agent that wants to move to any empty cell
+     */
+    public boolean needsRelocation() {
+        return false;
+    }
+
+    /**
+     * This method tells whether the next state of a cell depends only on the current states, so that a grid that
+     * repeats an earlier generation will keep cycling through the same ones.  Cells whose rules draw random numbers
+     * keep this default.
+     * @return true if the rules of the cell never use random numbers
+     */
+    public boolean isDeterministic() {
+        return false;
+    }
+
     /**
      * This method is used to set the shape of the cell. The parameter takes in a Shape object, which makes the
      * method very flexible to accommodate all the different shapes that the cells can be.  It depends on the
@@ -78,7 +119,19 @@ public abstract class Cell {
      */
     public void setNextState(int state){
         this.myNextState = state;
+        markChanged();
+    }
+
+    /**
+     * This method flags the cell as written this generation and lets its grid know, so the write is applied even
+     * when the cell lives in a part of the grid that is otherwise asleep.  Subclasses that set their next state
+     * directly should call it too.
+     */
+    protected void markChanged() {
         isChanged = true;
+        if (mySpace != null) {
+            mySpace.getGrid().cellWritten(myIndex);
+        }
     }
 
     /**
@@ -141,6 +194,23 @@ public abstract class Cell {
         return myPosition;
     }
 
+    /**
+     * This method sets the index of the cell within its grid, counting row by row.  It is used to identify the
+     * cell when several cells compete for the same move.
+     * @param index row * columns + column of the cell
+     */
+    public void setIndex(int index) {
+        myIndex = index;
+    }
+
+    /**
+     * This method returns the index of the cell within its grid, counting row by row.
+     * @return row * columns + column of the cell
+     */
+    public int getIndex() {
+        return myIndex;
+    }
+
     /**
      * This method returns the length of colors and is used to implement the feature of clicking on the cells
      * to change their states.
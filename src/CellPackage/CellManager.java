@@ -1,5 +1,6 @@
 package CellPackage;
 
+import EnginePackage.Topology;
 import Exceptions.ConfigurationException;
 import XMLPackage.SimulationData;
 import javafx.scene.shape.Polygon;
@@ -42,20 +43,17 @@ public class CellManager {
         Cell[][] cells = new Cell[(int) data.getRows()][(int) data.getCols()];
         createCells(simulationName, data, cells, fromSaved);
 
+        // the topology applies the boundary mode, so edge cells get wrapped or mirrored neighbors if asked to
+        var topology = new Topology(data);
+        var neighbors = new int[topology.getMaxNeighbors()];
         for (int i = 0; i < data.getRows(); i++) {
             for (int j = 0; j < data.getCols(); j++) {
                 Cell cell = cells[i][j];
                 List<Cell> cellList = new ArrayList();
 
-                int[][] pos = getNeighbors(data);
-
-                for (int[] neighbor : pos) {
-                    int r = neighbor[0];
-                    int c = neighbor[1];
-
-                    if (i + r < data.getRows() && i + r >= 0 && j + c < data.getCols() && j + c >= 0) {
-                        cellList.add(cells[i+r][j+c]);
-                    }
+                int total = topology.neighbors(topology.index(i, j), neighbors);
+                for (int n = 0; n < total; n++) {
+                    cellList.add(cells[topology.row(neighbors[n])][topology.col(neighbors[n])]);
                 }
                 cell.addNeighbors(cellList);
             }
@@ -70,39 +68,6 @@ public class CellManager {
         return cells;
     }
 
-    private int[][] getNeighbors(SimulationData data) {
-        if (data.getNeighborType().equals("neighbors8")) {
-            return new int[][]{
-                            {-1,-1}, {-1, 0}, {-1, 1},
-                             {0, -1},         {0, 1},
-                             {1, -1}, {1, 0}, {1, 1}};
-        }
-        else if(data.getNeighborType().equals("neighbors4")) {
-            return new int[][]{
-                                    {-1, 0},
-                            {0, -1},         {0, 1},
-                                     {1, 0}         };
-        }
-        else if(data.getNeighborType().equals("neighbors12")) {
-            return new int[][]{
-                                    {-1, -1}, {-1, 0}, {-1, 1},
-                            {0, -2}, {0, -1},       {0, 1}, {0, 2},
-                            {1, -2}, {1, -2},       {1, 1}, {1, 2}
-
-            };
-        }
-        else if(data.getNeighborType().equals("neighbors6")) {
-            return new int[][]{
-                                {-1, 0},
-                    {0, -1},            {0, 1},
-                    {1, -1},            {1,1},
-                                {1, 0}
-
-            };
-        }
-        return null;
-    }
-
     private Shape makeShape(SimulationData data, int i, int j) {
         // TODO change these strings to constants
         if (data.getGridShape().equals("squareGrid")) {
@@ -151,15 +116,14 @@ public class CellManager {
             IllegalAccessException, ConfigurationException {
 
         if (fromSaved) {
-            ArrayList<String> states = data.getStates();
-            if(states.size() != data.getCols()*data.getRows()) {
+            int[] states = data.getInitialStates();
+            if(states == null || states.length != data.getCols()*data.getRows()) {
                 throw new ConfigurationException("XML dimension mismatch!");
             }
             else {
                 for (int i = 0; i < data.getRows(); i++) {
                     for (int j = 0; j < data.getCols(); j++) {
-                        cells[i][j] = chooseCell(simulationName, data,
-                                Integer.parseInt(states.get((int) (i*data.getCols() + j))));
+                        cells[i][j] = chooseCell(simulationName, data, states[(int) (i*data.getCols() + j)]);
                     }
                 }
             }
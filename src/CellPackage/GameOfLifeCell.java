@@ -1,4 +1,5 @@
 package CellPackage;
+import EnginePackage.LifeRule;
 import XMLPackage.SimulationData;
 
 /**
@@ -11,19 +12,25 @@ import XMLPackage.SimulationData;
 public class GameOfLifeCell extends Cell{
 
     private int totalAlive = 0;
-    private static final int DEAD  = 0;
+    private LifeRule myRule;
     private static final int ALIVE = 1;
 
 
     public GameOfLifeCell(SimulationData simData, Integer initialState){
         super(simData, initialState);
+        myRule = simData.getLifeRule();
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
 
     /**
      * This method is used to update the cells and their states.  We assume that the getState() and
      * setNextState() methods from the superclass work properly to check the current state of the cell as well
      * as set the next state of the cell. We need this method to properly update the states of the simulation
-     * on the screen.
+     * on the screen. The birth and survival counts come from the rule parameter, B3/S23 if there is none.
      */
     public void updateCell(){
         totalAlive = 0;
@@ -32,13 +39,8 @@ public class GameOfLifeCell extends Cell{
                 totalAlive++;
             }
         }
-        if (this.myCurrState == ALIVE){
-           if (totalAlive < 2 || totalAlive > 3)
-               this.setNextState(DEAD);
-        }
-        else {
-            if (totalAlive == 3)
-                this.setNextState(ALIVE);
-        }
+        int next = myRule.next(this.myCurrState, totalAlive);
+        if (next != this.myCurrState)
+            this.setNextState(next);
     }
 }
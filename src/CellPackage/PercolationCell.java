@@ -18,6 +18,11 @@ public class PercolationCell extends Cell{
         super(simData, initialState);
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     /**
      * This method is used to update the states of the method.  We assume that these variables are initialized
      * correctly and that the methods getState() and setNextState() work properly.
@@ -4,6 +4,7 @@ import XMLPackage.SimulationData;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  *  This class is used to represent the PredatorPrey Simulation.  It depends on the Cell abstract class and assumes it is
@@ -58,6 +59,50 @@ public class PredatorPreyCell extends Cell {
         }
     }
 
+    /**
+     * This method is used by the propose/commit update mode.  Prey propose a random water neighbor, predators
+     * propose a random prey neighbor if there is one and a random water neighbor otherwise.  A predator out of
+     * energy makes no proposal so it can be killed when the move is committed.
+     * @return the neighbor to move to or eat, or null if there is none
+     */
+    @Override
+    public Cell proposeMove() {
+        List<PredatorPreyCell> options = null;
+        if (myCurrState == PREY) {
+            options = getUnchangedEmptyNeighbors();
+        } else if (myCurrState == PREDATOR && energy != 0) {
+            options = getUnchangedPreyNeighbors();
+            if (options.size() == 0)
+                options = getUnchangedEmptyNeighbors();
+        }
+        if (options == null || options.size() == 0)
+            return null;
+        return options.get(ThreadLocalRandom.current().nextInt(options.size()));
+    }
+
+    /**
+     * This method applies the move chosen in proposeMove() with the same rules as updateCell().  A predator that
+     * could not move loses energy, or dies if it has none left.
+     * @param target the neighbor the cell moves to or eats, or null if the cell stays where it is
+     */
+    @Override
+    public void commitMove(Cell target) {
+        if (target == null) {
+            if (myCurrState == PREDATOR) {
+                if (energy == 0)
+                    killPredator();
+                else
+                    setNextStateAndEnergy(PREDATOR, this.energy - 1);
+            }
+        } else if (myCurrState == PREY) {
+            movePreyTo((PredatorPreyCell) target);
+        } else if (target.getState() == PREY) {
+            eatPrey((PredatorPreyCell) target);
+        } else {
+            movePredatorTo((PredatorPreyCell) target);
+        }
+    }
+
     /**
      * This method is in charge of the movement of the Prey cells. It assumes that the waterCells list containing
      * all potential water cells that it is possible to move to, is filled correctly.  The prey either reproduces
@@ -66,8 +111,12 @@ public class PredatorPreyCell extends Cell {
     public void movePrey() {
         Random r = new Random();
         int num = r.nextInt(waterCells.size());
+        movePreyTo(waterCells.get(num));
+    }
+
+    private void movePreyTo(PredatorPreyCell water) {
         myEnergy = this.energy;
-        waterCells.get(num).setNextStateAndEnergy(PREY, myEnergy + 1);
+        water.setNextStateAndEnergy(PREY, myEnergy + 1);
         if (this.energy != REPRODUCTION_TIME) {
             this.setNextStateAndEnergy(WATER, 0);
         } else {
@@ -81,9 +130,13 @@ public class PredatorPreyCell extends Cell {
      */
     public void movePredator() {
         Random r = new Random();
-        myEnergy = this.energy;
         int num = r.nextInt(waterCells.size());
-        waterCells.get(num).setNextStateAndEnergy(PREDATOR, myEnergy - 1);
+        movePredatorTo(waterCells.get(num));
+    }
+
+    private void movePredatorTo(PredatorPreyCell water) {
+        myEnergy = this.energy;
+        water.setNextStateAndEnergy(PREDATOR, myEnergy - 1);
         setNextStateAndEnergy(WATER, 0);
     }
 
@@ -94,8 +147,12 @@ public class PredatorPreyCell extends Cell {
     public void eatPrey() {
         Random r = new Random();
         int num = r.nextInt(preyCells.size());
+        eatPrey(preyCells.get(num));
+    }
+
+    private void eatPrey(PredatorPreyCell prey) {
         myEnergy = this.energy;
-        preyCells.get(num).setNextStateAndEnergy(PREDATOR, myEnergy + ENERGY_FROM_PREY);
+        prey.setNextStateAndEnergy(PREDATOR, myEnergy + ENERGY_FROM_PREY);
         if (this.energy != REPRODUCTION_TIME) {
             setNextStateAndEnergy(WATER, 0);
         } else {
@@ -151,7 +208,7 @@ public class PredatorPreyCell extends Cell {
     public void setNextStateAndEnergy(int state, int energy) {
         myNextState = state;
         nextEnergy = energy;
-        isChanged = true;
+        markChanged();
     }
 
     /**
@@ -3,6 +3,7 @@ package CellPackage;
 import XMLPackage.SimulationData;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class simulates the Rock Paper Scissors Bacteria Simulation. It depends on methods from the Cell abstract
@@ -40,20 +41,51 @@ public class RPSCell extends Cell{
         potentialCells = getUnchangedNeighbors();
         if (potentialCells.size()!=0) {
             int index = random.nextInt(potentialCells.size());
-            RPSCell neighbor = potentialCells.get(index);
-            if (myCurrState == EMPTY) {
-                if (neighbor.level < 9)
-                    setNextState(neighbor.getState(), neighbor.level + 1);
-            } else if ((myCurrState == RED && neighbor.getState() == BLUE) ||
-                            (myCurrState == BLUE && neighbor.getState() == GREEN) ||
-                                    (myCurrState == GREEN && neighbor.getState() == RED)) {
-                neighbor.setNextState(myCurrState, 0);
-                setNextState(EMPTY, 0);
-            }
+            interact(potentialCells.get(index));
+        }
+    }
+
+    /**
+     * This method is used by the propose/commit update mode.  The cell picks a random neighbor to spread from or
+     * to eat, and only proposes it if the pick would actually change something.
+     * @return the chosen neighbor, or null if the interaction would do nothing
+     */
+    @Override
+    public Cell proposeMove() {
+        if (myNeighbors.isEmpty())
+            return null;
+        RPSCell neighbor = (RPSCell) myNeighbors.get(ThreadLocalRandom.current().nextInt(myNeighbors.size()));
+        if ((myCurrState == EMPTY && neighbor.level < 9) || beats(neighbor))
+            return neighbor;
+        return null;
+    }
 
+    /**
+     * This method applies the interaction chosen in proposeMove() once it has won arbitration.
+     * @param target the chosen neighbor, or null if the cell stays as it is
+     */
+    @Override
+    public void commitMove(Cell target) {
+        if (target != null)
+            interact((RPSCell) target);
+    }
+
+    private void interact(RPSCell neighbor) {
+        if (myCurrState == EMPTY) {
+            if (neighbor.level < 9)
+                setNextState(neighbor.getState(), neighbor.level + 1);
+        } else if (beats(neighbor)) {
+            neighbor.setNextState(myCurrState, 0);
+            setNextState(EMPTY, 0);
         }
     }
 
+    private boolean beats(RPSCell neighbor) {
+        return (myCurrState == RED && neighbor.getState() == BLUE) ||
+                    (myCurrState == BLUE && neighbor.getState() == GREEN) ||
+                            (myCurrState == GREEN && neighbor.getState() == RED);
+    }
+
     /**
      * This method returns the neighbors that have not been changed.  This is used to determine which cells are
      * eligible to have their states changed to simulate movement.
@@ -4,6 +4,7 @@ import XMLPackage.SimulationData;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class is used for the Segregation Simulation. It depends on the Cell abstract class and assumes it is
@@ -15,8 +16,9 @@ import java.util.Random;
 public class SegregationCell extends Cell {
 
     private double myProbSatisfied;
-    private List<Cell> myFriends = new ArrayList<>();
-    private List<Cell> myActiveNeighbors = new ArrayList<>();
+    private int[] myNeighborCounts;
+    private List<SegregationCell> myWatchers = new ArrayList<>();
+    private boolean satisfied;
     private List<Cell> currEmptyCells= new ArrayList<>();
     private List<? extends Cell> allEmptyCells;
     private double percentSame;
@@ -26,29 +28,102 @@ public class SegregationCell extends Cell {
     public SegregationCell(SimulationData simData, Integer initialState) {
         super(simData, initialState);
         myProbSatisfied = Double.parseDouble(simData.getParameter("probSatisfied").get(0));
+        myNeighborCounts = new int[myColors.length];
+    }
+
+    /**
+     * This method stores the neighbors like the superclass does, and also counts how many neighbors are in each
+     * state and signs this cell up to hear about their changes.  From then on the counts are only touched when a
+     * neighbor actually changes state, so checking satisfaction never has to walk the neighbor list.
+     * @param neighbors list of all the neighbors of a cell
+     */
+    @Override
+    public void addNeighbors(List<? extends Cell> neighbors) {
+        super.addNeighbors(neighbors);
+        for (Cell neighbor : neighbors) {
+            myNeighborCounts[neighbor.myCurrState]++;
+            ((SegregationCell) neighbor).myWatchers.add(this);
+        }
+        evaluate();
+    }
+
+    /**
+     * This method updates the state like the superclass does, and tells every cell that has this cell as a
+     * neighbor when the state actually changed.
+     */
+    @Override
+    public void updateState() {
+        int oldState = myCurrState;
+        super.updateState();
+        if (oldState != myCurrState) {
+            for (SegregationCell watcher : myWatchers) {
+                watcher.neighborChanged(oldState, myCurrState);
+            }
+            evaluate();
+        }
     }
 
     /**
      * This method is used to update the states of the cells. It assumes that the moveCell method works properly.
      */
     public void updateCell() {
-        myFriends.clear();
-        myActiveNeighbors.clear();
-        if (myCurrState != EMPTY) {
-            for (int i = 0; i < myNeighbors.size(); i++) {
-                if (myNeighbors.get(i).myCurrState == this.myCurrState) {
-                    myFriends.add(myNeighbors.get(i));
-                }
-                if (myNeighbors.get(i).myCurrState != EMPTY) {
-                    myActiveNeighbors.add(myNeighbors.get(i));
-                }
-            }
-            percentSame = (double) myFriends.size() / (double) myActiveNeighbors.size();
-            if (percentSame < myProbSatisfied)
-                moveCell();
+        if (myCurrState != EMPTY && !isSatisfied())
+            moveCell();
+    }
+
+    /**
+     * This method is used by the propose/commit update mode.  An unsatisfied agent proposes a random cell out of
+     * the empty cells the grid had at the start of the generation.
+     * @return an empty cell to move to, or null if the cell is empty, satisfied, or there is nowhere to go
+     */
+    @Override
+    public Cell proposeMove() {
+        if (myCurrState == EMPTY || isSatisfied())
+            return null;
+        List<? extends Cell> vacancies = mySpace.getGrid().getVacancies();
+        if (vacancies.isEmpty())
+            return null;
+        return vacancies.get(ThreadLocalRandom.current().nextInt(vacancies.size()));
+    }
+
+    /**
+     * This method is used by the batch relocation update mode to find every unsatisfied agent in one pass.
+     * @return true if the cell holds an agent that is not satisfied with its neighborhood
+     */
+    @Override
+    public boolean needsRelocation() {
+        return myCurrState != EMPTY && !isSatisfied();
+    }
+
+    /**
+     * This method moves the agent into the target cell once its proposal has won or it has been given a vacancy.
+     * @param target the empty cell to move to, or null if the agent stays
+     */
+    @Override
+    public void commitMove(Cell target) {
+        if (target != null) {
+            target.setNextState(myCurrState);
+            setNextState(EMPTY);
         }
     }
 
+    private boolean isSatisfied() {
+        return satisfied;
+    }
+
+    private void neighborChanged(int oldState, int newState) {
+        myNeighborCounts[oldState]--;
+        myNeighborCounts[newState]++;
+        evaluate();
+    }
+
+    private void evaluate() {
+        int friends = myNeighborCounts[myCurrState];
+        int active = myNeighbors.size() - myNeighborCounts[EMPTY];
+        percentSame = (double) friends / (double) active;
+        satisfied = !(percentSame < myProbSatisfied);
+    }
+
     /**
      * This method moves the cell to a new location if the percentage of same cells is not satisfied, and
      * is only called when this condition is satisfied.  It assumes the getEmptyCells() method in the Grid
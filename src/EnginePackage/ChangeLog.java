@@ -0,0 +1,79 @@
+package EnginePackage;
+
+import java.util.Arrays;
+
+/**
+ * The ChangeLog class records every state transition an engine makes during one generation, in the order they were
+ * made. The front-end uses it to redraw only the cells that changed instead of the whole grid. A run with nothing to
+ * redraw turns it off, so a generation that changes millions of cells doesn't fill the heap with their transitions.
+ */
+public class ChangeLog {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] myIndices;
+    private int[] myFrom;
+    private int[] myTo;
+    private int mySize;
+    private boolean myEnabled = true;
+
+    public ChangeLog() {
+        myIndices = new int[INITIAL_CAPACITY];
+        myFrom = new int[INITIAL_CAPACITY];
+        myTo = new int[INITIAL_CAPACITY];
+        mySize = 0;
+    }
+
+    /**
+     * Records a transition
+     * @param index index of the cell that changed
+     * @param from state before the transition
+     * @param to state after the transition
+     */
+    public void record(int index, int from, int to) {
+        if (!myEnabled) {
+            return;
+        }
+        if (mySize == myIndices.length) {
+            myIndices = Arrays.copyOf(myIndices, mySize * 2);
+            myFrom = Arrays.copyOf(myFrom, mySize * 2);
+            myTo = Arrays.copyOf(myTo, mySize * 2);
+        }
+        myIndices[mySize] = index;
+        myFrom[mySize] = from;
+        myTo[mySize] = to;
+        mySize++;
+    }
+
+    /**
+     * Turns recording on or off, a ChangeLog that is off stays empty
+     * @param enabled whether transitions are recorded
+     */
+    public void setEnabled(boolean enabled) {
+        myEnabled = enabled;
+        mySize = 0;
+    }
+
+    public boolean isEnabled() {
+        return myEnabled;
+    }
+
+    public void clear() {
+        mySize = 0;
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    public int getIndex(int k) {
+        return myIndices[k];
+    }
+
+    public int getFrom(int k) {
+        return myFrom[k];
+    }
+
+    public int getTo(int k) {
+        return myTo[k];
+    }
+}
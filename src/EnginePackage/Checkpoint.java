@@ -0,0 +1,426 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A Checkpoint is a binary copy of everything an engine needs to carry on exactly where it was, so that a long run can
+ * be restarted without replaying it or parsing XML. It is much faster to write and read than a saved XML file.
+ *
+ * The file starts with a header: a magic number, the format version, a hash of the simulation's configuration, the
+ * generation, the random seed and the number of cells. Engines draw their random numbers from the seed and the
+ * generation, so the two together are the whole state of their random number generator. After the header come named
+ * layers, each an array of bytes or ints, such as the state of every cell or the energy of the PredatorPrey animals.
+ * A layer is stored either raw or deflated.
+ *
+ * read() maps the layers of the file into memory instead of reading them, and raw layers are bulk copied from the
+ * mapping straight into the engine's arrays. Layers of StatePlanes are streamed to and from the file a chunk at a
+ * time, so a plane kept off the heap is never copied onto it.
+ */
+public class Checkpoint {
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x43534B50;
+    private static final int BYTES = 1;
+    private static final int INTS = Integer.BYTES;
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private int myConfigHash;
+    private long myGeneration;
+    private long mySeed;
+    private int myCells;
+    private Map<String, Layer> myLayers;
+
+    /**
+     * Creates an empty checkpoint to fill with layers
+     * @param configHash hash of the configuration of the simulation
+     * @param cells number of cells of the grid
+     */
+    public Checkpoint(int configHash, int cells) {
+        myConfigHash = configHash;
+        myCells = cells;
+        myLayers = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds a layer of bytes
+     * @param name name of the layer, unique within the checkpoint
+     * @param values the bytes, which must not change until the checkpoint is written
+     */
+    public void putBytes(String name, byte[] values) {
+        myLayers.put(name, new Layer(BYTES, values.length, values, null, null, null, false));
+    }
+
+    /**
+     * Adds a layer of bytes that is read from a StatePlane as it is written
+     * @param name name of the layer, unique within the checkpoint
+     * @param plane the plane, which must not change until the checkpoint is written
+     */
+    public void putPlane(String name, StatePlane plane) {
+        myLayers.put(name, new Layer(BYTES, plane.size(), null, null, plane, null, false));
+    }
+
+    /**
+     * Adds a layer of ints
+     * @param name name of the layer, unique within the checkpoint
+     * @param values the ints, which must not change until the checkpoint is written
+     */
+    public void putInts(String name, int[] values) {
+        myLayers.put(name, new Layer(INTS, values.length, null, values, null, null, false));
+    }
+
+    /**
+     * Copies a layer of bytes into an array
+     * @param name name of the layer
+     * @param into array of the length of the layer
+     * @throws ConfigurationException if the layer is missing or doesn't fit
+     */
+    public void getBytes(String name, byte[] into) {
+        Layer layer = find(name, BYTES, into.length);
+        if (layer.myBytes != null) {
+            System.arraycopy(layer.myBytes, 0, into, 0, into.length);
+        }
+        else if (layer.myPlane != null) {
+            for (int k = 0; k < into.length; k++) {
+                into[k] = (byte) layer.myPlane.get(k);
+            }
+        }
+        else {
+            read(layer, ByteBuffer.wrap(into));
+        }
+    }
+
+    /**
+     * Copies a layer of bytes into a StatePlane, a chunk at a time
+     * @param name name of the layer
+     * @param into plane of the length of the layer
+     * @throws ConfigurationException if the layer is missing, doesn't fit or can't be inflated
+     */
+    public void getPlane(String name, StatePlane into) {
+        Layer layer = find(name, BYTES, into.size());
+        if (layer.myBytes != null || layer.myPlane != null) {
+            for (int k = 0; k < layer.myLength; k++) {
+                into.set(k, layer.myBytes != null ? layer.myBytes[k] : layer.myPlane.get(k));
+            }
+            return;
+        }
+        if (!layer.myDeflated) {
+            ByteBuffer data = layer.myStored.duplicate();
+            for (int k = 0; k < layer.myLength; k++) {
+                into.set(k, data.get());
+            }
+            return;
+        }
+        var inflater = new Inflater();
+        inflater.setInput(layer.myStored.duplicate());
+        var piece = ByteBuffer.allocate(CHUNK_SIZE);
+        try {
+            int k = 0;
+            while (k < layer.myLength) {
+                piece.clear().limit(Math.min(CHUNK_SIZE, layer.myLength - k));
+                if (inflater.inflate(piece) == 0 && (inflater.finished() || inflater.needsInput()
+                        || inflater.needsDictionary())) {
+                    throw new ConfigurationException("Invalid checkpoint.");
+                }
+                piece.flip();
+                while (piece.hasRemaining()) {
+                    into.set(k++, piece.get());
+                }
+            }
+        }
+        catch (DataFormatException e) {
+            throw new ConfigurationException("Invalid checkpoint.");
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Copies a layer of ints into a new array
+     * @param name name of the layer
+     * @return the ints
+     * @throws ConfigurationException if the layer is missing
+     */
+    public int[] getInts(String name) {
+        Layer layer = myLayers.get(name);
+        if (layer == null || layer.myWidth != INTS) {
+            throw new ConfigurationException("Checkpoint has no " + name + ".");
+        }
+        if (layer.myInts != null) {
+            return layer.myInts.clone();
+        }
+        var values = new int[layer.myLength];
+        if (layer.myDeflated) {
+            var bytes = ByteBuffer.allocate(layer.myLength * INTS);
+            read(layer, bytes);
+            bytes.flip();
+            bytes.asIntBuffer().get(values);
+        }
+        else {
+            layer.myStored.duplicate().asIntBuffer().get(values);
+        }
+        return values;
+    }
+
+    public boolean hasLayer(String name) {
+        return myLayers.containsKey(name);
+    }
+
+    private Layer find(String name, int width, int length) {
+        Layer layer = myLayers.get(name);
+        if (layer == null || layer.myWidth != width || layer.myLength != length) {
+            throw new ConfigurationException("Checkpoint has no " + name + " of this size.");
+        }
+        return layer;
+    }
+
+    private void read(Layer layer, ByteBuffer into) {
+        if (!layer.myDeflated) {
+            into.put(layer.myStored.duplicate());
+            return;
+        }
+        var inflater = new Inflater();
+        inflater.setInput(layer.myStored.duplicate());
+        try {
+            while (into.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(into) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        }
+        catch (DataFormatException e) {
+            throw new ConfigurationException("Invalid checkpoint.");
+        }
+        finally {
+            inflater.end();
+        }
+        if (into.hasRemaining()) {
+            throw new ConfigurationException("Invalid checkpoint.");
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it if it exists. The file is forced to the disk before this returns, so
+     * that renaming it afterwards can't leave an empty file behind after a power loss.
+     * @param path file to write
+     * @param deflate whether to compress the layers, which makes the file smaller but restoring slower
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path, boolean deflate) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(myConfigHash).putLong(myGeneration).putLong(mySeed)
+                    .putInt(myCells).putInt(myLayers.size()).flip();
+            writeFully(channel, header);
+            var chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            for (Map.Entry<String, Layer> entry : myLayers.entrySet()) {
+                writeLayer(channel, entry.getKey(), entry.getValue(), deflate, chunk);
+            }
+            channel.force(true);
+        }
+    }
+
+    private void writeLayer(FileChannel channel, String name, Layer layer, boolean deflate, ByteBuffer chunk)
+            throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        var header = ByteBuffer.allocate(Short.BYTES + nameBytes.length + 2 + 2 * Integer.BYTES);
+        header.putShort((short) nameBytes.length).put(nameBytes).put((byte) layer.myWidth)
+                .put(deflate ? DEFLATED : RAW).putInt(layer.myLength);
+        int sizePosition = header.position();
+        header.putInt(0).flip();
+        long start = channel.position();
+        writeFully(channel, header);
+
+        Deflater deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        long stored = 0;
+        try {
+            if (layer.myPlane != null) {
+                var piece = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int from = 0; from < layer.myLength; from += CHUNK_SIZE) {
+                    piece.clear();
+                    for (int k = from; k < Math.min(layer.myLength, from + CHUNK_SIZE); k++) {
+                        piece.put((byte) layer.myPlane.get(k));
+                    }
+                    stored += writePiece(channel, piece.flip(), deflater, chunk);
+                }
+            }
+            else if (layer.myBytes != null) {
+                stored += writePiece(channel, ByteBuffer.wrap(layer.myBytes), deflater, chunk);
+            }
+            else {
+                var data = ByteBuffer.allocate(layer.myLength * INTS);
+                data.asIntBuffer().put(layer.myInts);
+                stored += writePiece(channel, data, deflater, chunk);
+            }
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    stored += drain(channel, deflater, chunk);
+                }
+            }
+        }
+        finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        var size = ByteBuffer.allocate(Integer.BYTES).putInt((int) stored).flip();
+        channel.write(size, start + sizePosition);
+    }
+
+    private long writePiece(FileChannel channel, ByteBuffer piece, Deflater deflater, ByteBuffer chunk)
+            throws IOException {
+        if (deflater == null) {
+            long stored = piece.remaining();
+            writeFully(channel, piece);
+            return stored;
+        }
+        long stored = 0;
+        deflater.setInput(piece);
+        while (!deflater.needsInput()) {
+            stored += drain(channel, deflater, chunk);
+        }
+        return stored;
+    }
+
+    private long drain(FileChannel channel, Deflater deflater, ByteBuffer chunk) throws IOException {
+        chunk.clear();
+        deflater.deflate(chunk);
+        chunk.flip();
+        long stored = chunk.remaining();
+        writeFully(channel, chunk);
+        return stored;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Maps a checkpoint file into memory, one mapping per layer so that a file can be larger than a single mapping
+     * allows. The layers are only copied out when an engine asks for them.
+     * @param path file to read
+     * @return the checkpoint
+     * @throws IOException if the file can't be read
+     * @throws ConfigurationException if the file is not a checkpoint of this version
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new ConfigurationException("Invalid checkpoint.");
+            }
+            int configHash = header.getInt();
+            long generation = header.getLong();
+            long seed = header.getLong();
+            var checkpoint = new Checkpoint(configHash, header.getInt());
+            checkpoint.setGeneration(generation);
+            checkpoint.setSeed(seed);
+            int layers = header.getInt();
+            long position = HEADER_SIZE;
+            for (int k = 0; k < layers; k++) {
+                var nameBytes = new byte[readFully(channel, position, Short.BYTES).getShort()];
+                position += Short.BYTES;
+                readFully(channel, position, nameBytes.length).get(nameBytes);
+                position += nameBytes.length;
+                ByteBuffer info = readFully(channel, position, 2 + 2 * Integer.BYTES);
+                position += info.capacity();
+                int width = info.get();
+                boolean deflated = info.get() == DEFLATED;
+                int length = info.getInt();
+                int stored = info.getInt();
+                // a raw layer is exactly its values, so a damaged header is caught here instead of misreading data
+                if ((width != BYTES && width != INTS) || length < 0 || stored < 0
+                        || stored > channel.size() - position || (!deflated && stored != (long) length * width)) {
+                    throw new ConfigurationException("Invalid checkpoint.");
+                }
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, position, stored);
+                position += stored;
+                checkpoint.myLayers.put(new String(nameBytes, StandardCharsets.UTF_8),
+                        new Layer(width, length, null, null, null, data, deflated));
+            }
+            return checkpoint;
+        }
+        catch (RuntimeException e) {
+            if (e instanceof ConfigurationException) {
+                throw e;
+            }
+            throw new ConfigurationException("Invalid checkpoint.");
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        var buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ConfigurationException("Invalid checkpoint.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    public int getConfigHash() {
+        return myConfigHash;
+    }
+
+    public int getCells() {
+        return myCells;
+    }
+
+    public long getGeneration() {
+        return myGeneration;
+    }
+
+    public void setGeneration(long generation) {
+        myGeneration = generation;
+    }
+
+    public long getSeed() {
+        return mySeed;
+    }
+
+    public void setSeed(long seed) {
+        mySeed = seed;
+    }
+
+    /**
+     * A layer either holds the array or plane it was given or the part of the mapped file it is stored in
+     */
+    private static class Layer {
+        private int myWidth;
+        private int myLength;
+        private byte[] myBytes;
+        private int[] myInts;
+        private StatePlane myPlane;
+        private ByteBuffer myStored;
+        private boolean myDeflated;
+
+        Layer(int width, int length, byte[] bytes, int[] ints, StatePlane plane, ByteBuffer stored, boolean deflated) {
+            myWidth = width;
+            myLength = length;
+            myBytes = bytes;
+            myInts = ints;
+            myPlane = plane;
+            myStored = stored;
+            myDeflated = deflated;
+        }
+    }
+}
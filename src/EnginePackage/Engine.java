@@ -0,0 +1,305 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This abstract class is the base of the engines, which run a simulation's rules directly on primitive arrays
+ * instead of on Cell objects. An engine is chosen with the engine parameter in the XML file, whose value selects
+ * the engine's mode. The CellGrid then steps the engine and only copies the transitions recorded in the ChangeLog
+ * back into its cells for display.
+ *
+ * Cells are identified by their index in the engine's Topology. With the default rowMajor layout this counts row by
+ * row, the same way Cell.getIndex() does, otherwise Topology.toStorage() and toLogical() convert between the two.
+ */
+public abstract class Engine implements AutoCloseable {
+    public static final String ENGINE = "engine";
+    public static final String SEED = "seed";
+    protected static final String STATES = "states";
+
+    protected Topology myTopology;
+    protected String myMode;
+    protected ChangeLog myChanges;
+    protected int myGeneration;
+    protected long mySeed;
+    protected SplittableRandom myRandom;
+    private SimulationData myData;
+    private List<StatePlane> myPlanes;
+    private StatePlane myBefore;
+    private StatePlane myCheckpointCopy;
+
+    public Engine(SimulationData data, Topology topology) {
+        myTopology = topology;
+        myMode = data.getOptionalParameter(ENGINE, "");
+        myChanges = new ChangeLog();
+        myGeneration = 0;
+        String seed = data.getOptionalParameter(SEED, "");
+        mySeed = seed.isEmpty() ? new SplittableRandom().nextLong() : Long.parseLong(seed);
+        myData = data;
+        myPlanes = new ArrayList<>();
+    }
+
+    /**
+     * Creates a plane of one byte per cell with the storage chosen in the XML file. The engine keeps track of it for
+     * flush() and getFootprint().
+     * @param name what the plane holds, unique within the engine
+     * @return an all zero plane
+     */
+    protected StatePlane createPlane(String name) {
+        StatePlane plane = StatePlane.create(myData, myTopology.size(), name);
+        myPlanes.add(plane);
+        return plane;
+    }
+
+    /**
+     * Stops engines that keep their cells in plain arrays from silently ignoring the storage parameter
+     * @throws ConfigurationException if the XML file asks for storage other than heap
+     */
+    protected void requireHeapStorage() {
+        if (!myData.getOptionalParameter(StatePlane.STORAGE, StatePlane.HEAP).equals(StatePlane.HEAP)) {
+            throw new ConfigurationException("This engine only supports heap storage.");
+        }
+    }
+
+    /**
+     * Fills the engine with the initial state of every cell
+     * @param states row by row states of the grid
+     */
+    public abstract void load(int[] states);
+
+    /**
+     * Applies the rules once. Subclasses record every transition they make in myChanges.
+     */
+    protected abstract void advance();
+
+    /**
+     * Returns the current state of a cell
+     * @param index index of the cell
+     * @return the state of the cell
+     */
+    public abstract int getState(int index);
+
+    /**
+     * Changes the state of a cell from outside the rules, for example when the user clicks on it
+     * @param index index of the cell
+     * @param state the new state
+     */
+    public abstract void setState(int index, int state);
+
+    /**
+     * Advances the simulation by one generation. The random numbers of each generation come from a generator seeded
+     * with the seed and the generation, so the same seed gives the same run, and a run restored from a Checkpoint
+     * goes on exactly as it would have.
+     */
+    public void step() {
+        myChanges.clear();
+        myRandom = new SplittableRandom(mySeed + myGeneration);
+        advance();
+        myGeneration++;
+    }
+
+    /**
+     * Advances the simulation by several generations without showing the ones in between. Afterwards the ChangeLog
+     * holds the net change of every cell over all of them. Engines for deterministic rules can override this with
+     * something faster than stepping one generation at a time.
+     * @param generations number of generations to advance
+     */
+    public void fastForward(int generations) {
+        StatePlane before = copyStates();
+        for (int g = 0; g < generations; g++) {
+            step();
+        }
+        recordNetChanges(before);
+    }
+
+    /**
+     * Copies the current state of every cell into a plane kept for this, created on first use with the storage chosen
+     * in the XML file, so that a grid kept off the heap isn't copied onto it
+     * @return plane holding the state of every cell, or null if the ChangeLog doesn't record, as nothing is compared
+     */
+    protected StatePlane copyStates() {
+        if (!myChanges.isEnabled()) {
+            return null;
+        }
+        if (myBefore == null) {
+            myBefore = createPlane("before");
+        }
+        for (int k = 0; k < myBefore.size(); k++) {
+            myBefore.set(k, getState(k));
+        }
+        return myBefore;
+    }
+
+    /**
+     * Copies a plane into one kept for checkpoints, created on first use with the storage chosen in the XML file. A
+     * checkpoint written in the background reads its planes while the simulation keeps stepping, so engines hand it
+     * this copy, taken between two steps, rather than the plane they update.
+     * @param plane plane to copy
+     * @return copy that only changes when the next checkpoint is filled
+     */
+    protected StatePlane copyForCheckpoint(StatePlane plane) {
+        if (myCheckpointCopy == null) {
+            myCheckpointCopy = createPlane("checkpoint");
+        }
+        for (int k = 0; k < plane.size(); k++) {
+            myCheckpointCopy.set(k, plane.get(k));
+        }
+        return myCheckpointCopy;
+    }
+
+    /**
+     * Replaces the ChangeLog with the difference between the given states and the current ones
+     * @param before states to compare with, from copyStates(), or null to only clear it
+     */
+    protected void recordNetChanges(StatePlane before) {
+        myChanges.clear();
+        if (before == null) {
+            return;
+        }
+        for (int k = 0; k < before.size(); k++) {
+            if (getState(k) != before.get(k)) {
+                myChanges.record(k, before.get(k), getState(k));
+            }
+        }
+    }
+
+    /**
+     * Makes sure the state of the engine is stored wherever its StatePlanes keep it, such as the file of a mapped
+     * plane. Engines that don't use StatePlanes have nothing to do.
+     */
+    public void flush() {
+        for (StatePlane plane : myPlanes) {
+            plane.flush();
+        }
+    }
+
+    /**
+     * Closes the StatePlanes of the engine, releasing files such as those of mapped planes. The engine is not used
+     * after.
+     */
+    @Override
+    public void close() {
+        for (StatePlane plane : myPlanes) {
+            plane.close();
+        }
+    }
+
+    /**
+     * Returns how many bytes the StatePlanes of the engine currently take up
+     * @return memory used by the planes
+     */
+    public long getFootprint() {
+        long footprint = 0;
+        for (StatePlane plane : myPlanes) {
+            footprint += plane.getFootprint();
+        }
+        return footprint;
+    }
+
+    /**
+     * Compares the memory the StatePlanes would need at one byte per cell with what they take up, which is above 1
+     * for compressed storage such as tiled
+     * @return uncompressed size over footprint, 1 for an engine without planes
+     */
+    public double getCompressionRatio() {
+        long size = 0;
+        for (StatePlane plane : myPlanes) {
+            size += plane.size();
+        }
+        long footprint = getFootprint();
+        return footprint == 0 ? 1 : size / (double) footprint;
+    }
+
+    /**
+     * Adds the generation, the seed and the layers of the engine to a checkpoint
+     * @param checkpoint checkpoint of this engine's grid
+     */
+    public void saveCheckpoint(Checkpoint checkpoint) {
+        checkpoint.setGeneration(myGeneration);
+        checkpoint.setSeed(mySeed);
+        writeLayers(checkpoint);
+    }
+
+    /**
+     * Puts the engine back in the state saved in a checkpoint. Afterwards the ChangeLog holds the net change of every
+     * cell, like after fastForward().
+     * @param checkpoint checkpoint of a grid of the same size
+     * @throws ConfigurationException if the checkpoint is of another grid
+     */
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        if (checkpoint.getCells() != myTopology.size()) {
+            throw new ConfigurationException("Checkpoint doesn't match the grid.");
+        }
+        StatePlane before = copyStates();
+        readLayers(checkpoint);
+        myGeneration = (int) checkpoint.getGeneration();
+        mySeed = checkpoint.getSeed();
+        recordNetChanges(before);
+    }
+
+    /**
+     * Adds every per cell array the engine needs to continue exactly to a checkpoint. By default this is the state of
+     * every cell, engines with more, such as the energy of animals or the order they are visited in, add their own.
+     * Engines that keep their states in a StatePlane write a copyForCheckpoint() of it with Checkpoint.putPlane()
+     * instead.
+     * @param checkpoint checkpoint to fill
+     */
+    protected void writeLayers(Checkpoint checkpoint) {
+        var states = new byte[myTopology.size()];
+        for (int k = 0; k < states.length; k++) {
+            states[k] = (byte) getState(k);
+        }
+        checkpoint.putBytes(STATES, states);
+    }
+
+    /**
+     * Reads the layers written by writeLayers() back into the engine
+     * @param checkpoint checkpoint to read
+     */
+    protected void readLayers(Checkpoint checkpoint) {
+        var states = new byte[myTopology.size()];
+        checkpoint.getBytes(STATES, states);
+        var values = new int[states.length];
+        for (int k = 0; k < states.length; k++) {
+            values[k] = states[k];
+        }
+        load(values);
+    }
+
+    /**
+     * Describes something the engine worked out about the grid beyond the states of its cells, such as whether a
+     * Percolation cluster spans it, for the simulation to show next to its status
+     * @return a short description, or null if there is nothing to add
+     */
+    public String getFinding() {
+        return null;
+    }
+
+    /**
+     * Gives the transitions made by the last step
+     * @return ChangeLog of the last generation
+     */
+    public ChangeLog getChanges() {
+        return myChanges;
+    }
+
+    public int getGeneration() {
+        return myGeneration;
+    }
+
+    /**
+     * Returns the seed the random numbers of every generation are drawn from
+     * @return the seed parameter, or the random seed picked when there is none
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    public Topology getTopology() {
+        return myTopology;
+    }
+}
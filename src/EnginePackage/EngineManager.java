@@ -0,0 +1,71 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The EngineManager class creates the engine matching a simulation, the same way the CellManager creates cells:
+ * the engine for a simulation called Name is the class EnginePackage.NameEngine, found with reflection.
+ */
+public class EngineManager {
+    /**
+     * Tells whether the XML file asks for the simulation to be run by an engine
+     * @param data condensed data from the XML parser
+     * @return true if the engine parameter is present
+     */
+    public boolean usesEngine(SimulationData data) {
+        return !data.getOptionalParameter(Engine.ENGINE, "").isEmpty();
+    }
+
+    /**
+     * Creates the engine of a simulation and loads the initial states into it
+     * @param simulationName name of the simulation, as used for the cell classes
+     * @param data condensed data from the XML parser
+     * @param states row by row initial states of the grid
+     * @return the loaded engine
+     * @throws ClassNotFoundException
+     * @throws NoSuchMethodException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws ConfigurationException
+     */
+    public Engine createEngine(String simulationName, SimulationData data, int[] states) throws
+            ClassNotFoundException,
+            NoSuchMethodException,
+            InstantiationException,
+            IllegalAccessException,
+            InvocationTargetException,
+            ConfigurationException {
+        Engine engine = createEngine(simulationName, data);
+        engine.load(engine.getTopology().toStorage(states));
+        return engine;
+    }
+
+    /**
+     * Creates the engine of a simulation with every cell in state 0, for callers that set the states themselves
+     * @param simulationName name of the simulation, as used for the cell classes
+     * @param data condensed data from the XML parser
+     * @return the empty engine
+     * @throws ClassNotFoundException
+     * @throws NoSuchMethodException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @throws ConfigurationException
+     */
+    public Engine createEngine(String simulationName, SimulationData data) throws
+            ClassNotFoundException,
+            NoSuchMethodException,
+            InstantiationException,
+            IllegalAccessException,
+            InvocationTargetException,
+            ConfigurationException {
+        var topology = new Topology(data);
+        return (Engine) Class.forName("EnginePackage." + simulationName + "Engine")
+                .getConstructor(SimulationData.class, Topology.class)
+                .newInstance(data, topology);
+    }
+}
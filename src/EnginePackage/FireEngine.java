@@ -0,0 +1,201 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * This engine runs the Fire simulation by following the burning front. Only trees next to a fire can catch, so a
+ * generation only visits the burning cells and the trees around them: every burning cell burns out, and every tree
+ * it touches gets one more burning neighbor in a count array. A tree with k burning neighbors then catches with
+ * probability 1 - (1 - probCatch)^k, which is precomputed for every k, so each candidate needs a single random draw
+ * instead of one per burning neighbor as in FireCell.
+ *
+ * Select it with <engine>frontier</engine>.
+ *
+ * With <engine>dense</engine> every generation instead counts the burning neighbors of all cells at once with a
+ * PlaneKernel, SIMD when the Vector API is available, and then makes the same single draw for every tree with a
+ * burning neighbor. This suits large grids where much of the forest is on fire.
+ */
+public class FireEngine extends Engine {
+    private static final String FRONTIER = "frontier";
+    private static final String DENSE = "dense";
+    private static final int EMPTY  = 0;
+    private static final int FIRE = 1;
+    private static final int TREE  = 2;
+    private static final int MIN_LIST = 64;
+    private static final String FRONT = "front";
+
+    private double[] myCatchProbability;
+    private StatePlane myStates;
+    private StatePlane myBurningNeighbors;
+    private int[] myBurning;
+    private int myBurningCount;
+    private int[] myCandidates;
+    private int myCandidateCount;
+    private int[] myNeighbors;
+    private GhostPlane myPlane;
+    private PlaneKernel myKernel;
+
+    public FireEngine(SimulationData data, Topology topology) {
+        super(data, topology);
+        if (!myMode.equals(FRONTIER) && !myMode.equals(DENSE)) {
+            throw new ConfigurationException("Invalid Fire engine.");
+        }
+        double probCatch = Double.parseDouble(data.getParameter("probCatch").get(0));
+        myCatchProbability = new double[topology.getMaxNeighbors() + 1];
+        for (int k = 0; k < myCatchProbability.length; k++) {
+            myCatchProbability[k] = 1 - Math.pow(1 - probCatch, k);
+        }
+        myStates = createPlane(STATES);
+        myBurningNeighbors = createPlane("burning");
+        myBurning = new int[MIN_LIST];
+        myCandidates = new int[MIN_LIST];
+        myNeighbors = new int[topology.getMaxNeighbors()];
+        if (myMode.equals(DENSE)) {
+            if (!myStates.hasArray()) {
+                throw new ConfigurationException("Dense engines need heap storage.");
+            }
+            myPlane = new GhostPlane(topology);
+            myKernel = PlaneKernel.create();
+        }
+    }
+
+    @Override
+    public void load(int[] states) {
+        myBurningCount = 0;
+        for (int k = 0; k < states.length; k++) {
+            myStates.set(k, states[k]);
+            if (states[k] == FIRE) {
+                myBurning = append(myBurning, myBurningCount++, k);
+            }
+        }
+    }
+
+    @Override
+    protected void advance() {
+        if (myMode.equals(DENSE)) {
+            advanceDense();
+            return;
+        }
+        // burn out the front and count how many burning neighbors each tree around it has
+        myCandidateCount = 0;
+        for (int b = 0; b < myBurningCount; b++) {
+            int cell = myBurning[b];
+            if (myStates.get(cell) != FIRE) {
+                continue;
+            }
+            myStates.set(cell, EMPTY);
+            myChanges.record(cell, FIRE, EMPTY);
+            int total = myTopology.reverseNeighbors(cell, myNeighbors);
+            for (int n = 0; n < total; n++) {
+                int tree = myNeighbors[n];
+                if (myStates.get(tree) == TREE) {
+                    int burning = myBurningNeighbors.get(tree);
+                    myBurningNeighbors.set(tree, burning + 1);
+                    if (burning == 0) {
+                        myCandidates = append(myCandidates, myCandidateCount++, tree);
+                    }
+                }
+            }
+        }
+
+        // one draw per candidate decides the new front
+        myBurningCount = 0;
+        for (int c = 0; c < myCandidateCount; c++) {
+            int tree = myCandidates[c];
+            if (myRandom.nextDouble() < myCatchProbability[myBurningNeighbors.get(tree)]) {
+                myStates.set(tree, FIRE);
+                myChanges.record(tree, TREE, FIRE);
+                myBurning = append(myBurning, myBurningCount++, tree);
+            }
+            myBurningNeighbors.set(tree, 0);
+        }
+    }
+
+    private void advanceDense() {
+        byte[] states = myStates.array();
+        byte[] burningNeighbors = myBurningNeighbors.array();
+        myPlane.load(states, FIRE);
+        myKernel.countNeighbors(myPlane, myTopology.getOffsets(), burningNeighbors);
+        myBurningCount = 0;
+        for (int k = 0; k < states.length; k++) {
+            if (states[k] == FIRE) {
+                states[k] = EMPTY;
+                myChanges.record(k, FIRE, EMPTY);
+            }
+            else if (states[k] == TREE && burningNeighbors[k] > 0
+                    && myRandom.nextDouble() < myCatchProbability[burningNeighbors[k]]) {
+                states[k] = FIRE;
+                myChanges.record(k, TREE, FIRE);
+                myBurningCount++;
+            }
+        }
+    }
+
+    /**
+     * Saves the states and, in frontier mode, the burning front. Dense mode visits the cells in index order and only
+     * counts the front, so it has no list to save.
+     * @param checkpoint checkpoint to fill
+     */
+    @Override
+    protected void writeLayers(Checkpoint checkpoint) {
+        checkpoint.putPlane(STATES, copyForCheckpoint(myStates));
+        if (!myMode.equals(DENSE)) {
+            checkpoint.putInts(FRONT, Arrays.copyOf(myBurning, myBurningCount));
+        }
+    }
+
+    @Override
+    protected void readLayers(Checkpoint checkpoint) {
+        checkpoint.getPlane(STATES, myStates);
+        if (myMode.equals(DENSE)) {
+            myBurningCount = 0;
+            for (int k = 0; k < myStates.size(); k++) {
+                if (myStates.get(k) == FIRE) {
+                    myBurningCount++;
+                }
+            }
+            return;
+        }
+        // the front is visited in the order it caught fire, which decides who gets which random number
+        int[] burning = checkpoint.getInts(FRONT);
+        myBurning = Arrays.copyOf(burning, Math.max(burning.length, MIN_LIST));
+        myBurningCount = burning.length;
+    }
+
+    private int[] append(int[] list, int size, int value) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    @Override
+    public int getState(int index) {
+        return myStates.get(index);
+    }
+
+    @Override
+    public void setState(int index, int state) {
+        if (state == FIRE && myStates.get(index) != FIRE) {
+            if (myMode.equals(DENSE)) {
+                myBurningCount++;
+            }
+            else {
+                myBurning = append(myBurning, myBurningCount++, index);
+            }
+        }
+        myStates.set(index, state);
+    }
+
+    /**
+     * Returns the size of the burning front
+     * @return number of cells currently on fire
+     */
+    public int getFrontSize() {
+        return myBurningCount;
+    }
+}
@@ -0,0 +1,215 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * This engine runs any Life-like rule given in B/S notation by the rule parameter (B3/S23 if there is none), so
+ * HighLife, Day and Night and the others need no new classes.
+ *
+ * With <engine>table</engine> every generation first builds a plane holding the number of live neighbors of each
+ * cell, by adding the state plane shifted by each neighbor offset, and then reads the next state of every cell out
+ * of the compiled LifeRule table. The shifted planes are read from a GhostPlane whose border is refreshed for the
+ * boundary mode every generation, so neither pass has a branch per cell, and both run through a PlaneKernel that
+ * uses SIMD instructions when the Vector API is available.
+ *
+ * With <engine>incremental</engine> the count plane is kept from one generation to the next. When a cell is born or
+ * dies, 1 is added to or taken from the count of every cell that has it as a neighbor, and those cells are put on
+ * the work list for the next generation. Only cells on the work list are looked at, since a cell whose state and
+ * count did not change can't change either, so a mostly still pattern costs time in proportion to its activity
+ * rather than to the area of the grid.
+ *
+ * Fast forwarding a finite or toroidal grid goes through a TemporalBlocker in either mode, so that each part of the
+ * grid is advanced several generations while it is in cache.
+ */
+public class GameOfLifeEngine extends Engine {
+    private static final String TABLE = "table";
+    private static final String INCREMENTAL = "incremental";
+
+    private LifeRule myRule;
+    private byte[] myStates;
+    private byte[] myNextStates;
+    private byte[] myCounts;
+    private int[] myWork;
+    private int myWorkCount;
+    private int[] myNextWork;
+    private int myNextWorkCount;
+    private boolean[] myQueued;
+    private int[] myFlips;
+    private int myFlipCount;
+    private int[] myNeighbors;
+    private GhostPlane myPlane;
+    private PlaneKernel myKernel;
+    private TemporalBlocker myBlocker;
+
+    public GameOfLifeEngine(SimulationData data, Topology topology) {
+        super(data, topology);
+        if (!myMode.equals(TABLE) && !myMode.equals(INCREMENTAL)) {
+            throw new ConfigurationException("Invalid GameOfLife engine.");
+        }
+        requireHeapStorage();
+        myRule = data.getLifeRule();
+        myStates = new byte[topology.size()];
+        myNextStates = new byte[topology.size()];
+        myCounts = new byte[topology.size()];
+        if (topology.isRowMajor()) {
+            myPlane = new GhostPlane(topology);
+            myKernel = PlaneKernel.create();
+        }
+        else if (myMode.equals(TABLE)) {
+            throw new ConfigurationException("Dense engines need the rowMajor layout.");
+        }
+        if (TemporalBlocker.supports(topology)) {
+            myBlocker = TemporalBlocker.create(data, topology, myRule.getTable(), LifeRule.ALIVE);
+        }
+        if (myMode.equals(INCREMENTAL)) {
+            myWork = new int[topology.size()];
+            myNextWork = new int[topology.size()];
+            myQueued = new boolean[topology.size()];
+            myFlips = new int[topology.size()];
+            myNeighbors = new int[topology.getMaxNeighbors()];
+        }
+    }
+
+    @Override
+    public void load(int[] states) {
+        for (int k = 0; k < states.length; k++) {
+            myStates[k] = (byte) states[k];
+        }
+        if (myMode.equals(INCREMENTAL)) {
+            rebuildWork();
+        }
+    }
+
+    private void rebuildWork() {
+        countNeighbors();
+        Arrays.fill(myQueued, false);
+        myNextWorkCount = 0;
+        for (int k = 0; k < myStates.length; k++) {
+            enqueue(k);
+        }
+    }
+
+    @Override
+    public void fastForward(int generations) {
+        if (myBlocker == null) {
+            super.fastForward(generations);
+            return;
+        }
+        StatePlane before = copyStates();
+        for (int done = 0; done < generations; done += myBlocker.getDepth()) {
+            myBlocker.advance(myStates, myNextStates, Math.min(myBlocker.getDepth(), generations - done));
+            byte[] temp = myStates;
+            myStates = myNextStates;
+            myNextStates = temp;
+        }
+        myGeneration += generations;
+        recordNetChanges(before);
+        if (myMode.equals(INCREMENTAL)) {
+            rebuildWork();
+        }
+    }
+
+    @Override
+    protected void advance() {
+        if (myMode.equals(INCREMENTAL)) {
+            advanceIncremental();
+            return;
+        }
+        countNeighbors();
+        myKernel.applyRule(myStates, myCounts, myRule.getTable(), myNextStates);
+        for (int k = 0; k < myStates.length; k++) {
+            if (myNextStates[k] != myStates[k]) {
+                myChanges.record(k, myStates[k], myNextStates[k]);
+            }
+        }
+        byte[] temp = myStates;
+        myStates = myNextStates;
+        myNextStates = temp;
+    }
+
+    private void advanceIncremental() {
+        int[] temp = myWork;
+        myWork = myNextWork;
+        myNextWork = temp;
+        myWorkCount = myNextWorkCount;
+        myNextWorkCount = 0;
+
+        // decide every transition before touching the counts, so all cells see the same generation
+        byte[] table = myRule.getTable();
+        myFlipCount = 0;
+        for (int w = 0; w < myWorkCount; w++) {
+            int cell = myWork[w];
+            myQueued[cell] = false;
+            if (table[myStates[cell] * LifeRule.STRIDE + myCounts[cell]] != myStates[cell]) {
+                myFlips[myFlipCount++] = cell;
+            }
+        }
+        for (int b = 0; b < myFlipCount; b++) {
+            int cell = myFlips[b];
+            int from = myStates[cell];
+            flip(cell, from == LifeRule.ALIVE ? LifeRule.DEAD : LifeRule.ALIVE);
+            myChanges.record(cell, from, myStates[cell]);
+        }
+    }
+
+    private void flip(int cell, int state) {
+        int delta = state - myStates[cell];
+        myStates[cell] = (byte) state;
+        enqueue(cell);
+        int total = myTopology.reverseNeighbors(cell, myNeighbors);
+        for (int n = 0; n < total; n++) {
+            myCounts[myNeighbors[n]] += delta;
+            enqueue(myNeighbors[n]);
+        }
+    }
+
+    private void enqueue(int cell) {
+        if (!myQueued[cell]) {
+            myQueued[cell] = true;
+            myNextWork[myNextWorkCount++] = cell;
+        }
+    }
+
+    private void countNeighbors() {
+        if (myPlane == null) {
+            // other layouts can't be shifted as planes, which only happens when the incremental counts are rebuilt
+            for (int k = 0; k < myStates.length; k++) {
+                int total = myTopology.neighbors(k, myNeighbors);
+                int count = 0;
+                for (int n = 0; n < total; n++) {
+                    count += myStates[myNeighbors[n]];
+                }
+                myCounts[k] = (byte) count;
+            }
+            return;
+        }
+        myPlane.load(myStates);
+        myKernel.countNeighbors(myPlane, myTopology.getOffsets(), myCounts);
+    }
+
+    @Override
+    public int getState(int index) {
+        return myStates[index];
+    }
+
+    @Override
+    public void setState(int index, int state) {
+        if (myMode.equals(INCREMENTAL)) {
+            flip(index, state);
+        }
+        else {
+            myStates[index] = (byte) state;
+        }
+    }
+
+    /**
+     * Returns the rule being run
+     * @return the compiled rule
+     */
+    public LifeRule getRule() {
+        return myRule;
+    }
+}
@@ -0,0 +1,121 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+
+/**
+ * A GhostPlane is a copy of an engine's state array surrounded by a ghost border as wide as the reach of the
+ * neighborhood. The border holds whatever the boundary mode puts past the edge of the grid: zeros for finite, the
+ * opposite side of the grid for toroidal and a mirror image of the edge for reflective. Once the border is refreshed,
+ * the neighbor of any grid cell at any offset is a plain array read at a fixed distance, so loops over the plane need
+ * no bounds checks and no special case for the edges.
+ */
+public class GhostPlane {
+    private Topology myTopology;
+    private int myPad;
+    private int myStride;
+    private byte[] myCells;
+
+    /**
+     * Creates an empty plane for a topology
+     * @param topology grid size, neighborhood and boundary mode
+     * @throws ConfigurationException if the topology is not laid out row by row
+     */
+    public GhostPlane(Topology topology) {
+        if (!topology.isRowMajor()) {
+            throw new ConfigurationException("Dense engines need the rowMajor layout.");
+        }
+        myTopology = topology;
+        myPad = topology.getReach();
+        myStride = topology.getCols() + 2 * myPad;
+        myCells = new byte[(topology.getRows() + 2 * myPad) * myStride];
+    }
+
+    /**
+     * Copies a state array into the plane and refreshes the ghost border from it
+     * @param states row by row array of states
+     */
+    public void load(byte[] states) {
+        int rows = myTopology.getRows();
+        int cols = myTopology.getCols();
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(states, r * cols, myCells, index(r, 0), cols);
+        }
+        refreshBorder();
+    }
+
+    /**
+     * Fills the plane with 1 where a state array holds the given state and 0 elsewhere, then refreshes the ghost
+     * border. Summing this plane counts the neighbors in that state.
+     * @param states row by row array of states
+     * @param state the state to mark
+     */
+    public void load(byte[] states, int state) {
+        int rows = myTopology.getRows();
+        int cols = myTopology.getCols();
+        for (int r = 0; r < rows; r++) {
+            int source = r * cols;
+            int target = index(r, 0);
+            for (int c = 0; c < cols; c++) {
+                myCells[target + c] = (byte) (states[source + c] == state ? 1 : 0);
+            }
+        }
+        refreshBorder();
+    }
+
+    private void refreshBorder() {
+        // the finite border is never written, so it stays zero
+        if (myTopology.getBoundary().equals(Topology.FINITE)) {
+            return;
+        }
+        int rows = myTopology.getRows();
+        int cols = myTopology.getCols();
+        for (int r = -myPad; r < rows + myPad; r++) {
+            int sourceRow = myTopology.resolveRow(r);
+            boolean ghostRow = r < 0 || r >= rows;
+            for (int c = -myPad; c < cols + myPad; c++) {
+                if (ghostRow || c < 0 || c >= cols) {
+                    myCells[index(r, c)] = myCells[index(sourceRow, myTopology.resolveCol(c))];
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a grid row and column, which may lie in the ghost border, into an index into the plane
+     * @param row row of the cell, from -getPad() to rows + getPad()
+     * @param col column of the cell, from -getPad() to cols + getPad()
+     * @return index into getCells()
+     */
+    public int index(int row, int col) {
+        return (row + myPad) * myStride + col + myPad;
+    }
+
+    /**
+     * Gives the distance in the plane between a cell and its neighbor at an offset
+     * @param offset {row, column} offset of the neighbor
+     * @return amount to add to the index of the cell
+     */
+    public int shift(int[] offset) {
+        return offset[0] * myStride + offset[1];
+    }
+
+    public int getRows() {
+        return myTopology.getRows();
+    }
+
+    public int getCols() {
+        return myTopology.getCols();
+    }
+
+    public byte[] getCells() {
+        return myCells;
+    }
+
+    public int getStride() {
+        return myStride;
+    }
+
+    public int getPad() {
+        return myPad;
+    }
+}
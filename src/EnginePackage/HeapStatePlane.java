@@ -0,0 +1,35 @@
+package EnginePackage;
+
+import XMLPackage.SimulationData;
+
+/**
+ * The default StatePlane, an ordinary byte array on the Java heap.
+ */
+public class HeapStatePlane extends StatePlane {
+    private byte[] myCells;
+
+    public HeapStatePlane(SimulationData data, int size, String name) {
+        super(size);
+        myCells = new byte[size];
+    }
+
+    @Override
+    public int get(int index) {
+        return myCells[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        myCells[index] = (byte) value;
+    }
+
+    @Override
+    public byte[] array() {
+        return myCells;
+    }
+
+    @Override
+    public boolean hasArray() {
+        return true;
+    }
+}
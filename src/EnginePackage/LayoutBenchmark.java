@@ -0,0 +1,118 @@
+package EnginePackage;
+
+/**
+ * This class measures how much the morton layout improves memory locality over rowMajor for each neighborhood. For
+ * every neighborhood and layout it reports how many different 64 byte cache lines the neighbors of a cell fall in
+ * on average, when states are stored one byte per cell as the engines do, and the time one pass takes that visits
+ * the cells in storage order and sums the states of their neighbors. Fewer lines per cell means fewer cache misses
+ * once rows no longer fit in cache.
+ *
+ * Run it with the grid size and an optional number of passes, e.g. "2048 2048 10".
+ */
+public class LayoutBenchmark {
+    private static final String[] NEIGHBORHOODS = {"neighbors4", "neighbors6", "neighbors8", "neighbors12"};
+    private static final String[] LAYOUTS = {Topology.ROW_MAJOR, Topology.MORTON};
+    private static final int CACHE_LINE = 64;
+    private static final int DEFAULT_PASSES = 10;
+    private static final int WARMUP_PASSES = 3;
+
+    private Topology myTopology;
+    private int[] myTable;
+    private int[] myStarts;
+    private byte[] myStates;
+
+    /**
+     * Builds the flat neighbor table of a topology, the same lookups an engine would make
+     * @param topology grid to measure
+     */
+    public LayoutBenchmark(Topology topology) {
+        myTopology = topology;
+        int size = topology.size();
+        myStarts = new int[size + 1];
+        myTable = new int[size * topology.getMaxNeighbors()];
+        var buffer = new int[topology.getMaxNeighbors()];
+        for (int k = 0; k < size; k++) {
+            int total = topology.neighbors(k, buffer);
+            System.arraycopy(buffer, 0, myTable, myStarts[k], total);
+            myStarts[k + 1] = myStarts[k] + total;
+        }
+        myStates = new byte[size];
+        for (int k = 0; k < size; k++) {
+            myStates[k] = (byte) (topology.toLogical(k) % 3 == 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * Returns the average number of cache lines the neighborhood of a cell spans, the cell included
+     * @return cache lines per cell
+     */
+    public double getLinesPerCell() {
+        long lines = 0;
+        var seen = new long[myTopology.getMaxNeighbors() + 1];
+        for (int k = 0; k < myTopology.size(); k++) {
+            int count = 0;
+            seen[count++] = k / CACHE_LINE;
+            for (int n = myStarts[k]; n < myStarts[k + 1]; n++) {
+                long line = myTable[n] / CACHE_LINE;
+                boolean found = false;
+                for (int s = 0; s < count; s++) {
+                    found |= seen[s] == line;
+                }
+                if (!found) {
+                    seen[count++] = line;
+                }
+            }
+            lines += count;
+        }
+        return lines / (double) myTopology.size();
+    }
+
+    /**
+     * Times passes over the grid that sum the neighbor states of every cell
+     * @param passes number of timed passes
+     * @return nanoseconds per cell
+     */
+    public double time(int passes) {
+        long checksum = 0;
+        for (int p = 0; p < WARMUP_PASSES; p++) {
+            checksum += pass();
+        }
+        long start = System.nanoTime();
+        for (int p = 0; p < passes; p++) {
+            checksum += pass();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+        return elapsed / (double) passes / myTopology.size();
+    }
+
+    private long pass() {
+        long sum = 0;
+        for (int k = 0; k < myTopology.size(); k++) {
+            for (int n = myStarts[k]; n < myStarts[k + 1]; n++) {
+                sum += myStates[myTable[n]];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Prints the locality of every layout for every neighborhood
+     * @param args rows, columns and optionally the number of timed passes
+     */
+    public static void main(String[] args) {
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PASSES;
+        System.out.printf("%d x %d grid, %d passes%n", rows, cols, passes);
+        for (String neighborhood : NEIGHBORHOODS) {
+            for (String layout : LAYOUTS) {
+                var benchmark = new LayoutBenchmark(new Topology(rows, cols, neighborhood, Topology.FINITE, layout));
+                System.out.printf("%-12s %-9s %5.2f lines/cell %7.2f ns/cell%n", neighborhood, layout,
+                        benchmark.getLinesPerCell(), benchmark.time(passes));
+            }
+        }
+    }
+}
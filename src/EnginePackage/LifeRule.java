@@ -0,0 +1,82 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+
+/**
+ * The LifeRule class compiles a Life-like rule written in B/S notation, such as B3/S23 for the Game of Life, B36/S23
+ * for HighLife or B3678/S34678 for Day and Night, into a lookup table indexed by the state of a cell and its number
+ * of live neighbors. Applying the rule is then a single array read with no branches.
+ *
+ * Each digit after B or S is a count, so counts of 10 and more, which only the triangle neighborhood reaches, are
+ * written separated by commas instead, e.g. B3,11/S2,3,10. The table is read only, so one LifeRule can be shared.
+ */
+public class LifeRule {
+    public static final String RULE = "rule";
+    public static final String GAME_OF_LIFE = "B3/S23";
+    public static final int DEAD = 0;
+    public static final int ALIVE = 1;
+    /**
+     * Distance between the dead and the alive half of the table, large enough for any neighborhood
+     */
+    public static final int STRIDE = PlaneKernel.STRIDE;
+
+    private byte[] myTable;
+    private String myRule;
+
+    /**
+     * Compiles a rule string
+     * @param rule rule in B/S notation, e.g. B36/S23 or B3,11/S2,3,10
+     * @throws ConfigurationException if the rule can't be read
+     */
+    public LifeRule(String rule) {
+        myRule = rule.trim().toUpperCase();
+        myTable = new byte[2 * STRIDE];
+        String[] parts = myRule.split("/");
+        if (parts.length != 2 || !parts[0].startsWith("B") || !parts[1].startsWith("S")) {
+            throw new ConfigurationException("Invalid rule.");
+        }
+        fill(parts[0].substring(1), DEAD);
+        fill(parts[1].substring(1), ALIVE);
+    }
+
+    private void fill(String counts, int state) {
+        if (counts.contains(",")) {
+            for (String count : counts.split(",", -1)) {
+                if (!count.matches("\\d{1,2}") || Integer.parseInt(count) >= STRIDE) {
+                    throw new ConfigurationException("Invalid rule.");
+                }
+                myTable[state * STRIDE + Integer.parseInt(count)] = ALIVE;
+            }
+            return;
+        }
+        for (char c : counts.toCharArray()) {
+            if (!Character.isDigit(c)) {
+                throw new ConfigurationException("Invalid rule.");
+            }
+            myTable[state * STRIDE + (c - '0')] = ALIVE;
+        }
+    }
+
+    /**
+     * Gives the next state of a cell
+     * @param state current state, DEAD or ALIVE
+     * @param liveNeighbors number of live neighbors
+     * @return next state
+     */
+    public int next(int state, int liveNeighbors) {
+        return myTable[state * STRIDE + liveNeighbors];
+    }
+
+    /**
+     * Gives the compiled table, indexed by state * STRIDE + live neighbors
+     * @return the lookup table
+     */
+    public byte[] getTable() {
+        return myTable;
+    }
+
+    @Override
+    public String toString() {
+        return myRule;
+    }
+}
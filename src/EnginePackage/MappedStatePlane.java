@@ -0,0 +1,149 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import Exceptions.SimulationException;
+import XMLPackage.SimulationData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A StatePlane stored in a memory-mapped file, so a grid can be larger than physical memory when it is run through
+ * EngineRun, which builds no cells, up to the 2^31 - 1 cells an int index reaches. The file is divided into tiles of
+ * TILE_SIZE cells that are each mapped the first time a cell in them is used. The operating system then pages a tile
+ * in while an engine works on it and can evict it again once the sweep has moved on, and only tiles that were written
+ * to are forced back to disk by flush(), which makes the file a checkpoint of the plane. close() closes the file, the
+ * engine does it when its simulation is replaced.
+ *
+ * Select it with <storage>mapped</storage>. The planes of an engine are kept in the files named by the storageFile
+ * parameter followed by the name of the plane, e.g. run.states and run.burning, or in temporary files if there is no
+ * storageFile.
+ */
+public class MappedStatePlane extends StatePlane {
+    public static final String STORAGE_FILE = "storageFile";
+    private static final int TILE_SHIFT = 22;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private FileChannel myChannel;
+    private MappedByteBuffer[] myTiles;
+    private boolean[] myDirty;
+
+    /**
+     * Creates the file, or reuses it if it already exists, and sizes it for the plane
+     * @param data SimulationData object holding parsed information
+     * @param size number of cells
+     * @param name name of the plane, added to the file name
+     * @throws ConfigurationException if the file can't be opened
+     */
+    public MappedStatePlane(SimulationData data, int size, String name) {
+        super(size);
+        try {
+            String base = data.getOptionalParameter(STORAGE_FILE, "");
+            File file;
+            if (base.isEmpty()) {
+                file = File.createTempFile(name, ".plane");
+                file.deleteOnExit();
+            }
+            else {
+                file = new File(base + "." + name);
+            }
+            var access = new RandomAccessFile(file, "rw");
+            access.setLength(size);
+            myChannel = access.getChannel();
+        }
+        catch (IOException e) {
+            throw new ConfigurationException("Could not open the storage file.");
+        }
+        int tiles = (int) (((long) size + TILE_SIZE - 1) >> TILE_SHIFT);
+        myTiles = new MappedByteBuffer[tiles];
+        myDirty = new boolean[tiles];
+    }
+
+    private MappedByteBuffer tile(int tile) {
+        if (myTiles[tile] == null) {
+            long start = (long) tile << TILE_SHIFT;
+            try {
+                long length = Math.min(TILE_SIZE, mySize - start);
+                myTiles[tile] = myChannel.map(FileChannel.MapMode.READ_WRITE, start, length);
+            }
+            catch (IOException e) {
+                throw new SimulationException("Could not map the storage file.");
+            }
+        }
+        return myTiles[tile];
+    }
+
+    @Override
+    public int get(int index) {
+        return tile(index >>> TILE_SHIFT).get(index & TILE_MASK);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        int tile = index >>> TILE_SHIFT;
+        tile(tile).put(index & TILE_MASK, (byte) value);
+        myDirty[tile] = true;
+    }
+
+    /**
+     * Writes the tiles changed since the last flush back to the file
+     */
+    @Override
+    public void flush() {
+        for (int t = 0; t < myTiles.length; t++) {
+            if (myDirty[t]) {
+                myTiles[t].force();
+                myDirty[t] = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the changed tiles back and closes the file. Tiles that are already mapped stay readable until they are
+     * garbage collected, since Java has no way to unmap them.
+     * @throws SimulationException if the file can't be closed
+     */
+    @Override
+    public void close() {
+        flush();
+        try {
+            myChannel.close();
+        }
+        catch (IOException e) {
+            throw new SimulationException("Could not close the storage file.");
+        }
+    }
+
+    /**
+     * Returns the number of tiles currently mapped, which bounds how much of the file can be resident in memory
+     * @return mapped tiles
+     */
+    public int getMappedTiles() {
+        int mapped = 0;
+        for (MappedByteBuffer tile : myTiles) {
+            if (tile != null) {
+                mapped++;
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Counts the mapped bytes, which for the last tile can be less than TILE_SIZE
+     * @return bytes of the file that are mapped
+     */
+    @Override
+    public long getFootprint() {
+        long footprint = 0;
+        for (MappedByteBuffer tile : myTiles) {
+            if (tile != null) {
+                footprint += tile.capacity();
+            }
+        }
+        return footprint;
+    }
+}
@@ -0,0 +1,31 @@
+package EnginePackage;
+
+import XMLPackage.SimulationData;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A StatePlane kept in a direct ByteBuffer, allocated once outside the Java heap. The garbage collector never scans
+ * or moves it, so the plane adds nothing to GC pauses or to the heap. A Simulation still builds a Cell and a shape
+ * for every cell on the heap, so grids too large for that are run with an EngineRun, which keeps nothing per cell
+ * besides the planes. The buffer is released when the plane is garbage collected. Select it with
+ * <storage>offHeap</storage>.
+ */
+public class OffHeapStatePlane extends StatePlane {
+    private ByteBuffer myCells;
+
+    public OffHeapStatePlane(SimulationData data, int size, String name) {
+        super(size);
+        myCells = ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public int get(int index) {
+        return myCells.get(index);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        myCells.put(index, (byte) value);
+    }
+}
@@ -0,0 +1,272 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * This engine runs the Percolation simulation in one of two modes.
+ *
+ * With <engine>frontier</engine> it keeps a queue of the cells that percolated last generation and only looks at
+ * the open cells around them, so cells the wave has already passed are never visited again. The result is the same
+ * ring-by-ring spread as PercolationCell.
+ *
+ * With <engine>dense</engine> every generation counts the percolated neighbors of all cells at once with a
+ * PlaneKernel, SIMD when the Vector API is available, and looks the next states up in a rule table. It gives the
+ * same result as frontier and suits large grids where the wave front is long.
+ *
+ * With <engine>instant</engine> the first step jumps straight to the final state: the open cells are joined to
+ * their open neighbors with union-find, and every open cell sharing a set with a percolated cell percolates. The
+ * same sets tell whether an open cluster spans the grid from the top row to the bottom row, which the simulation shows
+ * next to its status. Union-find treats every neighbor link as two-way, so instant needs a symmetric neighborhood
+ * such as neighbors4 or neighbors8 rather than the one-way links of the triangle and hexagon tables, and a finite
+ * boundary, since wrapping joins the top row to the bottom one and mirroring adds links of its own.
+ *
+ * Fast forwarding frontier or dense on a finite or toroidal grid goes through a TemporalBlocker, so each part of the
+ * grid is advanced several generations while it is in cache.
+ */
+public class PercolationEngine extends Engine {
+    private static final String FRONTIER = "frontier";
+    private static final String INSTANT = "instant";
+    private static final String DENSE = "dense";
+    private static final int OPEN  = 0;
+    private static final int PERCOLATED = 1;
+    private static final int BLOCKED = 2;
+    private static final String SPANS = "spans";
+    private static final String NO_SPAN = "no span";
+
+    private StatePlane myStates;
+    private int[] myFrontier;
+    private int myFrontierCount;
+    private int[] myNextFrontier;
+    private int myNextFrontierCount;
+    private int[] myNeighbors;
+    private boolean myEdited;
+    private boolean mySpans;
+    private boolean mySolved;
+    private GhostPlane myPlane;
+    private PlaneKernel myKernel;
+    private byte[] myCounts;
+    private StatePlane myNextStates;
+    private byte[] myTable;
+    private TemporalBlocker myBlocker;
+
+    public PercolationEngine(SimulationData data, Topology topology) {
+        super(data, topology);
+        if (!myMode.equals(FRONTIER) && !myMode.equals(INSTANT) && !myMode.equals(DENSE)) {
+            throw new ConfigurationException("Invalid Percolation engine.");
+        }
+        if (myMode.equals(INSTANT) && (!topology.getBoundary().equals(Topology.FINITE) || !topology.isSymmetric())) {
+            throw new ConfigurationException("Instant Percolation needs a finite boundary and a symmetric neighborhood.");
+        }
+        myStates = createPlane(STATES);
+        myFrontier = new int[64];
+        myNextFrontier = new int[64];
+        myNeighbors = new int[topology.getMaxNeighbors()];
+        // open cells with a percolated neighbor percolate, everything else stays as it is
+        myTable = new byte[3 * PlaneKernel.STRIDE];
+        for (int count = 0; count < PlaneKernel.STRIDE; count++) {
+            myTable[OPEN * PlaneKernel.STRIDE + count] = (byte) (count > 0 ? PERCOLATED : OPEN);
+            myTable[PERCOLATED * PlaneKernel.STRIDE + count] = PERCOLATED;
+            myTable[BLOCKED * PlaneKernel.STRIDE + count] = BLOCKED;
+        }
+        if (myMode.equals(DENSE)) {
+            if (!myStates.hasArray()) {
+                throw new ConfigurationException("Dense engines need heap storage.");
+            }
+            myPlane = new GhostPlane(topology);
+            myKernel = PlaneKernel.create();
+            myCounts = new byte[topology.size()];
+        }
+        if (!myMode.equals(INSTANT) && TemporalBlocker.supports(topology) && myStates.hasArray()) {
+            myBlocker = TemporalBlocker.create(data, topology, myTable, PERCOLATED);
+        }
+        if (myMode.equals(DENSE) || myBlocker != null) {
+            myNextStates = createPlane("next");
+        }
+    }
+
+    @Override
+    public void fastForward(int generations) {
+        if (myBlocker == null) {
+            super.fastForward(generations);
+            return;
+        }
+        StatePlane before = copyStates();
+        for (int done = 0; done < generations; done += myBlocker.getDepth()) {
+            myBlocker.advance(myStates.array(), myNextStates.array(),
+                    Math.min(myBlocker.getDepth(), generations - done));
+            StatePlane temp = myStates;
+            myStates = myNextStates;
+            myNextStates = temp;
+        }
+        myGeneration += generations;
+        recordNetChanges(before);
+        // the frontier is whatever percolated, it is rebuilt on the next step
+        myEdited = true;
+    }
+
+    @Override
+    public void load(int[] states) {
+        for (int k = 0; k < states.length; k++) {
+            myStates.set(k, states[k]);
+        }
+        myEdited = true;
+    }
+
+    @Override
+    protected void advance() {
+        if (myMode.equals(INSTANT)) {
+            if (myEdited) {
+                solve();
+            }
+        }
+        else if (myMode.equals(DENSE)) {
+            spreadDense();
+        }
+        else {
+            if (myEdited) {
+                rebuildFrontier();
+            }
+            spread();
+        }
+        myEdited = false;
+    }
+
+    private void spread() {
+        myNextFrontierCount = 0;
+        for (int f = 0; f < myFrontierCount; f++) {
+            int total = myTopology.reverseNeighbors(myFrontier[f], myNeighbors);
+            for (int n = 0; n < total; n++) {
+                int cell = myNeighbors[n];
+                if (myStates.get(cell) == OPEN) {
+                    myStates.set(cell, PERCOLATED);
+                    myChanges.record(cell, OPEN, PERCOLATED);
+                    myNextFrontier = append(myNextFrontier, myNextFrontierCount++, cell);
+                }
+            }
+        }
+        int[] temp = myFrontier;
+        myFrontier = myNextFrontier;
+        myNextFrontier = temp;
+        myFrontierCount = myNextFrontierCount;
+    }
+
+    private void spreadDense() {
+        byte[] states = myStates.array();
+        byte[] next = myNextStates.array();
+        myPlane.load(states, PERCOLATED);
+        myKernel.countNeighbors(myPlane, myTopology.getOffsets(), myCounts);
+        myKernel.applyRule(states, myCounts, myTable, next);
+        for (int k = 0; k < states.length; k++) {
+            if (next[k] != states[k]) {
+                myChanges.record(k, states[k], next[k]);
+            }
+        }
+        StatePlane temp = myStates;
+        myStates = myNextStates;
+        myNextStates = temp;
+    }
+
+    private void rebuildFrontier() {
+        myFrontierCount = 0;
+        for (int k = 0; k < myStates.size(); k++) {
+            if (myStates.get(k) == PERCOLATED) {
+                myFrontier = append(myFrontier, myFrontierCount++, k);
+            }
+        }
+    }
+
+    private void solve() {
+        int size = myStates.size();
+        var sets = new UnionFind(size);
+        for (int k = 0; k < size; k++) {
+            if (myStates.get(k) == BLOCKED) {
+                continue;
+            }
+            int total = myTopology.neighbors(k, myNeighbors);
+            for (int n = 0; n < total; n++) {
+                if (myStates.get(myNeighbors[n]) != BLOCKED) {
+                    sets.union(k, myNeighbors[n]);
+                }
+            }
+        }
+
+        var touchesTop = new boolean[size];
+        for (int j = 0; j < myTopology.getCols(); j++) {
+            int k = myTopology.index(0, j);
+            if (myStates.get(k) != BLOCKED) {
+                touchesTop[sets.find(k)] = true;
+            }
+        }
+        mySpans = false;
+        mySolved = true;
+        for (int j = 0; j < myTopology.getCols(); j++) {
+            int k = myTopology.index(myTopology.getRows() - 1, j);
+            if (myStates.get(k) != BLOCKED && touchesTop[sets.find(k)]) {
+                mySpans = true;
+            }
+        }
+
+        var wet = new boolean[size];
+        for (int k = 0; k < size; k++) {
+            if (myStates.get(k) == PERCOLATED) {
+                wet[sets.find(k)] = true;
+            }
+        }
+        for (int k = 0; k < size; k++) {
+            if (myStates.get(k) == OPEN && wet[sets.find(k)]) {
+                myStates.set(k, PERCOLATED);
+                myChanges.record(k, OPEN, PERCOLATED);
+            }
+        }
+    }
+
+    private int[] append(int[] list, int size, int value) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    @Override
+    public int getState(int index) {
+        return myStates.get(index);
+    }
+
+    @Override
+    protected void writeLayers(Checkpoint checkpoint) {
+        checkpoint.putPlane(STATES, copyForCheckpoint(myStates));
+    }
+
+    @Override
+    protected void readLayers(Checkpoint checkpoint) {
+        checkpoint.getPlane(STATES, myStates);
+        myEdited = true;
+    }
+
+    @Override
+    public void setState(int index, int state) {
+        myStates.set(index, state);
+        myEdited = true;
+    }
+
+    /**
+     * Tells whether an open cluster connects the top row to the bottom row. Only computed in instant mode, once the
+     * first step has been made.
+     * @return true if the grid percolates from top to bottom
+     */
+    public boolean spansTopToBottom() {
+        return mySpans;
+    }
+
+    @Override
+    public String getFinding() {
+        if (!mySolved) {
+            return null;
+        }
+        return spansTopToBottom() ? SPANS : NO_SPAN;
+    }
+}
@@ -0,0 +1,55 @@
+package EnginePackage;
+
+/**
+ * A PlaneKernel runs the two dense passes shared by the byte-per-cell engines over whole rows at a time: summing a
+ * GhostPlane over the offsets of a neighborhood, and looking up the next state of every cell in a rule table indexed
+ * by its state and its neighbor count.
+ *
+ * create() picks VectorPlaneKernel, which uses the jdk.incubator.vector module to process a full SIMD register of
+ * cells per instruction, and falls back to ScalarPlaneKernel when that module isn't available at runtime (it has to
+ * be added with --add-modules jdk.incubator.vector) or the machine's vectors are too short for the rule table.
+ */
+public abstract class PlaneKernel {
+    /**
+     * Distance between the rows of a rule table, one row per state. Neighbor counts must stay below it.
+     */
+    public static final int STRIDE = 16;
+
+    private static final String VECTOR_KERNEL = "EnginePackage.VectorPlaneKernel";
+
+    /**
+     * Creates the fastest kernel this JVM supports
+     * @return a vector kernel if possible, otherwise a scalar one
+     */
+    public static PlaneKernel create() {
+        try {
+            return (PlaneKernel) Class.forName(VECTOR_KERNEL).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            return new ScalarPlaneKernel();
+        }
+    }
+
+    /**
+     * Adds up the plane at every neighbor offset of every cell of the grid
+     * @param plane plane with a refreshed ghost border
+     * @param offsets {row, column} offsets of the neighborhood, at most plane.getPad() away
+     * @param counts row by row array that receives the sum for each cell
+     */
+    public abstract void countNeighbors(GhostPlane plane, int[][] offsets, byte[] counts);
+
+    /**
+     * Looks up the next state of every cell in a rule table
+     * @param states row by row array of current states
+     * @param counts neighbor count of each cell, below STRIDE
+     * @param table next state for each state and count, indexed by state * STRIDE + count
+     * @param next row by row array that receives the next states
+     */
+    public abstract void applyRule(byte[] states, byte[] counts, byte[] table, byte[] next);
+
+    /**
+     * Returns the number of cells handled by one instruction
+     * @return 1 for the scalar kernel, the vector length otherwise
+     */
+    public abstract int getLanes();
+}
@@ -0,0 +1,220 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * This engine runs the PredatorPrey simulation from a compact list of the cells that hold a fish or a shark, so a
+ * generation only visits the animals and their neighbors instead of the whole ocean. It follows the same rules as
+ * PredatorPreyCell: an animal acts once per generation, and a cell that has already been written this generation
+ * can't be moved into or eaten. The states live in a byte array, energies in an int array, and a generation stamp
+ * per cell replaces the isChanged flag so nothing has to be cleared between generations.
+ *
+ * Animals act in the order of the list rather than row by row. Select it with <engine>sparse</engine>.
+ */
+public class PredatorPreyEngine extends Engine {
+    private static final String SPARSE = "sparse";
+    private static final int PREDATOR = 0;
+    private static final int PREY = 1;
+    private static final int WATER = 2;
+    private static final int REPRODUCTION_TIME = 4;
+    private static final int ENERGY_FROM_PREY = 2;
+    private static final int PREY_START_ENERGY = 0;
+    private static final int PREDATOR_START_ENERGY = 3;
+    private static final int MIN_LIST = 16;
+    private static final String ENERGY = "energy";
+    private static final String ANIMALS = "animals";
+
+    private int myStartEnergy;
+    private byte[] myStates;
+    private int[] myEnergy;
+    private int[] myWritten;
+    private int[] myListed;
+    private int[] myAnimals;
+    private int myAnimalCount;
+    private int[] myNextAnimals;
+    private int myNextAnimalCount;
+    private int[] myNeighbors;
+    private int[] myOptions;
+
+    public PredatorPreyEngine(SimulationData data, Topology topology) {
+        super(data, topology);
+        requireHeapStorage();
+        if (!myMode.equals(SPARSE)) {
+            throw new ConfigurationException("Invalid PredatorPrey engine.");
+        }
+        myStartEnergy = Integer.parseInt(data.getParameter("energy").get(0));
+        myStates = new byte[topology.size()];
+        myEnergy = new int[topology.size()];
+        myWritten = new int[topology.size()];
+        myListed = new int[topology.size()];
+        Arrays.fill(myWritten, -1);
+        Arrays.fill(myListed, -1);
+        myAnimals = new int[MIN_LIST];
+        myNextAnimals = new int[MIN_LIST];
+        myNeighbors = new int[topology.getMaxNeighbors()];
+        myOptions = new int[topology.getMaxNeighbors()];
+    }
+
+    @Override
+    public void load(int[] states) {
+        myAnimalCount = 0;
+        for (int k = 0; k < states.length; k++) {
+            myStates[k] = (byte) states[k];
+            myEnergy[k] = myStartEnergy;
+            if (states[k] != WATER) {
+                myAnimals = append(myAnimals, myAnimalCount++, k);
+            }
+        }
+    }
+
+    @Override
+    protected void advance() {
+        myNextAnimalCount = 0;
+        for (int a = 0; a < myAnimalCount; a++) {
+            int cell = myAnimals[a];
+            if (myWritten[cell] == myGeneration) {
+                continue;
+            }
+            if (myStates[cell] == PREY) {
+                actPrey(cell);
+            }
+            else if (myStates[cell] == PREDATOR) {
+                actPredator(cell);
+            }
+        }
+        int[] temp = myAnimals;
+        myAnimals = myNextAnimals;
+        myNextAnimals = temp;
+        myAnimalCount = myNextAnimalCount;
+    }
+
+    private void actPrey(int cell) {
+        int count = unchangedNeighbors(cell, WATER);
+        if (count == 0) {
+            keep(cell);
+            return;
+        }
+        int energy = myEnergy[cell];
+        write(myOptions[myRandom.nextInt(count)], PREY, energy + 1);
+        if (energy != REPRODUCTION_TIME) {
+            write(cell, WATER, 0);
+        }
+        else {
+            write(cell, PREY, PREY_START_ENERGY);
+        }
+    }
+
+    private void actPredator(int cell) {
+        int energy = myEnergy[cell];
+        if (energy == 0) {
+            write(cell, WATER, 0);
+            return;
+        }
+        int count = unchangedNeighbors(cell, PREY);
+        if (count != 0) {
+            write(myOptions[myRandom.nextInt(count)], PREDATOR, energy + ENERGY_FROM_PREY);
+            if (energy != REPRODUCTION_TIME) {
+                write(cell, WATER, 0);
+            }
+            else {
+                write(cell, PREDATOR, PREDATOR_START_ENERGY);
+            }
+            return;
+        }
+        count = unchangedNeighbors(cell, WATER);
+        if (count != 0) {
+            write(myOptions[myRandom.nextInt(count)], PREDATOR, energy - 1);
+            write(cell, WATER, 0);
+        }
+        else {
+            write(cell, PREDATOR, energy - 1);
+        }
+    }
+
+    private int unchangedNeighbors(int cell, int state) {
+        int total = myTopology.neighbors(cell, myNeighbors);
+        int count = 0;
+        for (int n = 0; n < total; n++) {
+            int neighbor = myNeighbors[n];
+            if (myStates[neighbor] == state && myWritten[neighbor] != myGeneration) {
+                myOptions[count++] = neighbor;
+            }
+        }
+        return count;
+    }
+
+    private void write(int cell, int state, int energy) {
+        if (myStates[cell] != state) {
+            myChanges.record(cell, myStates[cell], state);
+        }
+        myStates[cell] = (byte) state;
+        myEnergy[cell] = energy;
+        myWritten[cell] = myGeneration;
+        if (state != WATER) {
+            keep(cell);
+        }
+    }
+
+    private void keep(int cell) {
+        if (myListed[cell] != myGeneration) {
+            myListed[cell] = myGeneration;
+            myNextAnimals = append(myNextAnimals, myNextAnimalCount++, cell);
+        }
+    }
+
+    private int[] append(int[] list, int size, int value) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    @Override
+    protected void writeLayers(Checkpoint checkpoint) {
+        checkpoint.putBytes(STATES, myStates.clone());
+        checkpoint.putInts(ENERGY, myEnergy.clone());
+        checkpoint.putInts(ANIMALS, Arrays.copyOf(myAnimals, myAnimalCount));
+    }
+
+    @Override
+    protected void readLayers(Checkpoint checkpoint) {
+        checkpoint.getBytes(STATES, myStates);
+        int[] energy = checkpoint.getInts(ENERGY);
+        if (energy.length != myEnergy.length) {
+            throw new ConfigurationException("Checkpoint doesn't match the grid.");
+        }
+        myEnergy = energy;
+        // the animals act in list order, which decides who gets which random number
+        int[] animals = checkpoint.getInts(ANIMALS);
+        myAnimals = Arrays.copyOf(animals, Math.max(animals.length, MIN_LIST));
+        myAnimalCount = animals.length;
+        Arrays.fill(myWritten, -1);
+        Arrays.fill(myListed, -1);
+    }
+
+    @Override
+    public int getState(int index) {
+        return myStates[index];
+    }
+
+    @Override
+    public void setState(int index, int state) {
+        myStates[index] = (byte) state;
+        myEnergy[index] = myStartEnergy;
+        if (state != WATER) {
+            myAnimals = append(myAnimals, myAnimalCount++, index);
+        }
+    }
+
+    /**
+     * Returns the number of fish and sharks alive
+     * @return size of the animal list
+     */
+    public int getPopulation() {
+        return myAnimalCount;
+    }
+}
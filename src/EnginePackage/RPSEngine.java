@@ -0,0 +1,183 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * This engine runs the Rock Paper Scissors simulation with one byte per cell: the color in the low 2 bits and the
+ * level in the next 4. What happens when a cell picks a neighbor is looked up in a table indexed by the two cell
+ * bytes, so the sweep has no rule branches at all. Neighbor choices come from a block of random numbers that is
+ * refilled in bulk instead of from a Random object per cell.
+ *
+ * The rules and the sweep order are the same as RPSCell: cells are visited row by row, each picks a random neighbor
+ * that hasn't been written this generation, and reads only the states from the start of the generation. Select it
+ * with <engine>packed</engine>.
+ */
+public class RPSEngine extends Engine {
+    private static final String PACKED = "packed";
+    private static final int EMPTY = 0;
+    private static final int RED = 1;
+    private static final int BLUE = 2;
+    private static final int GREEN = 3;
+    private static final int MAX_LEVEL = 9;
+    private static final int COLOR_MASK = 3;
+    private static final int LEVEL_SHIFT = 2;
+    private static final int WRITES_SELF = 1 << 12;
+    private static final int WRITES_NEIGHBOR = 1 << 13;
+    private static final int RANDOM_BLOCK = 4096;
+
+    private static final char[] TRANSITIONS = buildTransitions();
+
+    private byte[] myStates;
+    private byte[] myNextStates;
+    private long[] myWritten;
+    private int[] myWrittenList;
+    private int myWrittenCount;
+    private int[] myNeighbors;
+    private int[] myOptions;
+    private int[] myRandomBlock = new int[RANDOM_BLOCK];
+    private int myRandomPosition = RANDOM_BLOCK;
+
+    public RPSEngine(SimulationData data, Topology topology) {
+        super(data, topology);
+        requireHeapStorage();
+        if (!myMode.equals(PACKED)) {
+            throw new ConfigurationException("Invalid RPS engine.");
+        }
+        myStates = new byte[topology.size()];
+        myNextStates = new byte[topology.size()];
+        myWritten = new long[(topology.size() + 63) / 64];
+        myWrittenList = new int[64];
+        myNeighbors = new int[topology.getMaxNeighbors()];
+        myOptions = new int[topology.getMaxNeighbors()];
+    }
+
+    /**
+     * Precomputes the outcome of a cell interacting with a neighbor for every pair of cell bytes. Each entry holds
+     * the new byte of the cell in the low 6 bits, the new byte of the neighbor in the next 6, and flags telling
+     * which of the two is actually written.
+     */
+    private static char[] buildTransitions() {
+        var table = new char[256 * 256];
+        for (int self = 0; self < 256; self++) {
+            for (int neighbor = 0; neighbor < 256; neighbor++) {
+                int color = self & COLOR_MASK;
+                int neighborColor = neighbor & COLOR_MASK;
+                int neighborLevel = (neighbor >> LEVEL_SHIFT) & 0xF;
+                int entry = 0;
+                if (color == EMPTY) {
+                    if (neighborLevel < MAX_LEVEL) {
+                        entry = pack(neighborColor, neighborLevel + 1) | WRITES_SELF;
+                    }
+                }
+                else if (beats(color, neighborColor)) {
+                    entry = pack(EMPTY, 0) | (pack(color, 0) << 6) | WRITES_SELF | WRITES_NEIGHBOR;
+                }
+                table[(self << 8) | neighbor] = (char) entry;
+            }
+        }
+        return table;
+    }
+
+    private static boolean beats(int color, int other) {
+        return (color == RED && other == BLUE) || (color == BLUE && other == GREEN) || (color == GREEN && other == RED);
+    }
+
+    private static int pack(int color, int level) {
+        return color | (level << LEVEL_SHIFT);
+    }
+
+    @Override
+    public void load(int[] states) {
+        for (int k = 0; k < states.length; k++) {
+            myStates[k] = (byte) pack(states[k], 0);
+        }
+        System.arraycopy(myStates, 0, myNextStates, 0, myStates.length);
+    }
+
+    @Override
+    protected void advance() {
+        byte[] states = myStates;
+        byte[] next = myNextStates;
+        myWrittenCount = 0;
+        myRandomPosition = RANDOM_BLOCK;
+        for (int cell = 0; cell < states.length; cell++) {
+            int total = myTopology.neighbors(cell, myNeighbors);
+            int count = 0;
+            for (int n = 0; n < total; n++) {
+                int neighbor = myNeighbors[n];
+                if ((myWritten[neighbor >> 6] & (1L << neighbor)) == 0) {
+                    myOptions[count++] = neighbor;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            int neighbor = myOptions[choose(count)];
+            int entry = TRANSITIONS[((states[cell] & 0xFF) << 8) | (states[neighbor] & 0xFF)];
+            if ((entry & WRITES_SELF) != 0) {
+                write(next, cell, entry & 0x3F);
+            }
+            if ((entry & WRITES_NEIGHBOR) != 0) {
+                write(next, neighbor, (entry >> 6) & 0x3F);
+            }
+        }
+        for (int k = 0; k < myWrittenCount; k++) {
+            int cell = myWrittenList[k];
+            if ((states[cell] & COLOR_MASK) != (next[cell] & COLOR_MASK)) {
+                myChanges.record(cell, states[cell] & COLOR_MASK, next[cell] & COLOR_MASK);
+            }
+            states[cell] = next[cell];
+            myWritten[cell >> 6] = 0;
+        }
+    }
+
+    private void write(byte[] next, int cell, int value) {
+        next[cell] = (byte) value;
+        if ((myWritten[cell >> 6] & (1L << cell)) == 0) {
+            myWritten[cell >> 6] |= 1L << cell;
+            if (myWrittenCount == myWrittenList.length) {
+                myWrittenList = Arrays.copyOf(myWrittenList, myWrittenCount * 2);
+            }
+            myWrittenList[myWrittenCount++] = cell;
+        }
+    }
+
+    private int choose(int count) {
+        if (myRandomPosition == RANDOM_BLOCK) {
+            for (int k = 0; k < RANDOM_BLOCK; k++) {
+                myRandomBlock[k] = myRandom.nextInt();
+            }
+            myRandomPosition = 0;
+        }
+        return (int) (((myRandomBlock[myRandomPosition++] & 0xFFFFFFFFL) * count) >>> 32);
+    }
+
+    /**
+     * Saves the packed states, which hold the level of every cell along with its color
+     * @param checkpoint checkpoint to fill
+     */
+    @Override
+    protected void writeLayers(Checkpoint checkpoint) {
+        checkpoint.putBytes(STATES, myStates.clone());
+    }
+
+    @Override
+    protected void readLayers(Checkpoint checkpoint) {
+        checkpoint.getBytes(STATES, myStates);
+        System.arraycopy(myStates, 0, myNextStates, 0, myStates.length);
+    }
+
+    @Override
+    public int getState(int index) {
+        return myStates[index] & COLOR_MASK;
+    }
+
+    @Override
+    public void setState(int index, int state) {
+        myStates[index] = (byte) pack(state, 0);
+        myNextStates[index] = myStates[index];
+    }
+}
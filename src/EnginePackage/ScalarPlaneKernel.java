@@ -0,0 +1,43 @@
+package EnginePackage;
+
+/**
+ * The plain Java PlaneKernel, used when the Vector API is not available. Its loops have no branches per cell, so the
+ * JIT is still free to vectorize them on its own.
+ */
+public class ScalarPlaneKernel extends PlaneKernel {
+
+    @Override
+    public void countNeighbors(GhostPlane plane, int[][] offsets, byte[] counts) {
+        byte[] cells = plane.getCells();
+        int rows = plane.getRows();
+        int cols = plane.getCols();
+        for (int r = 0; r < rows; r++) {
+            int base = r * cols;
+            for (int c = 0; c < cols; c++) {
+                counts[base + c] = 0;
+            }
+        }
+        for (int[] offset : offsets) {
+            int shift = plane.shift(offset);
+            for (int r = 0; r < rows; r++) {
+                int base = r * cols;
+                int source = plane.index(r, 0) + shift;
+                for (int c = 0; c < cols; c++) {
+                    counts[base + c] += cells[source + c];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void applyRule(byte[] states, byte[] counts, byte[] table, byte[] next) {
+        for (int k = 0; k < states.length; k++) {
+            next[k] = table[states[k] * STRIDE + counts[k]];
+        }
+    }
+
+    @Override
+    public int getLanes() {
+        return 1;
+    }
+}
@@ -0,0 +1,110 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A StatePlane holds one byte per cell for an engine, such as the state of every cell or a count of its neighbors.
+ * Engines read and write their planes through get() and set() instead of indexing a byte array, so where the bytes
+ * live can be chosen in the XML file with the storage parameter without changing the engine. The backend for a value
+ * such as offHeap is the class EnginePackage.OffHeapStatePlane, found with reflection like the cells and engines.
+ *
+ * The dense engine modes run SIMD kernels directly on arrays, so they need a backend that has one.
+ */
+public abstract class StatePlane implements AutoCloseable {
+    public static final String STORAGE = "storage";
+    public static final String HEAP = "heap";
+
+    protected int mySize;
+
+    public StatePlane(int size) {
+        mySize = size;
+    }
+
+    /**
+     * Creates a plane with the backend chosen in the XML file, heap if there is none
+     * @param data SimulationData object holding parsed information
+     * @param size number of cells
+     * @param name what the plane holds, unique within an engine, used by backends that need to name their storage
+     * @return an all zero plane
+     * @throws ConfigurationException if the backend doesn't exist or can't be created
+     */
+    public static StatePlane create(SimulationData data, int size, String name) {
+        String storage = data.getOptionalParameter(STORAGE, HEAP);
+        String className = "EnginePackage." + Character.toUpperCase(storage.charAt(0)) + storage.substring(1)
+                + "StatePlane";
+        try {
+            return (StatePlane) Class.forName(className)
+                    .getConstructor(SimulationData.class, int.class, String.class)
+                    .newInstance(data, size, name);
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ConfigurationException("Could not create " + storage + " storage.");
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ConfigurationException("Invalid storage.");
+        }
+    }
+
+    public abstract int get(int index);
+
+    public abstract void set(int index, int value);
+
+    /**
+     * Sets every cell to the same value
+     * @param value the value
+     */
+    public void fill(int value) {
+        for (int k = 0; k < mySize; k++) {
+            set(k, value);
+        }
+    }
+
+    /**
+     * Makes sure every change is stored wherever the backend keeps its cells. Nothing to do for planes in memory.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Flushes the plane and releases whatever the backend holds open, such as a file. The plane is not used after.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Returns the array behind the plane, for the kernels that work on whole arrays
+     * @return the backing array
+     * @throws ConfigurationException if this backend has no array
+     */
+    public byte[] array() {
+        throw new ConfigurationException("This engine mode needs heap storage.");
+    }
+
+    /**
+     * Tells whether array() can be used
+     * @return true if the plane is backed by an array
+     */
+    public boolean hasArray() {
+        return false;
+    }
+
+    /**
+     * Returns how many bytes the plane currently takes up
+     * @return memory used by the cells
+     */
+    public long getFootprint() {
+        return mySize;
+    }
+
+    public int size() {
+        return mySize;
+    }
+}
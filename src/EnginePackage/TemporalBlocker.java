@@ -0,0 +1,164 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+/**
+ * The TemporalBlocker advances a deterministic rule by several generations at once in a cache friendly order.
+ * Stepping one generation at a time streams the whole grid through memory once per generation, so on a large grid
+ * every generation runs at the speed of main memory. Instead, the grid is cut into square tiles, and each tile is
+ * copied into a small buffer together with a halo of depth * reach cells around it. Since a cell can only be affected
+ * by cells at most reach away per generation, the buffer holds everything the tile depends on for depth generations,
+ * so it is advanced all of them while it stays in cache, the valid region shrinking by reach each time, and only the
+ * tile itself is written back.
+ *
+ * The rule is a table indexed by state * PlaneKernel.STRIDE + the number of neighbors in the counted state, like the
+ * ones PlaneKernel applies. Cells past the edge of a finite grid are given an extra frozen state that never changes and
+ * is never counted. The halo is exact for finite and toroidal boundaries. A mirrored halo only evolves like the cells
+ * it mirrors when the neighborhood is symmetric, so reflective grids are rejected, and so are layouts other than
+ * rowMajor.
+ */
+public class TemporalBlocker {
+    public static final String BLOCK_SIZE = "blockSize";
+    public static final String BLOCK_DEPTH = "blockDepth";
+    public static final String DEFAULT_SIZE = "128";
+    public static final String DEFAULT_DEPTH = "8";
+
+    private Topology myTopology;
+    private byte[] myTable;
+    private int myCounted;
+    private int myFrozen;
+    private int myTileSize;
+    private int myDepth;
+    private int myReach;
+    private int myStride;
+    private int[] myShifts;
+    private byte[] myLocal;
+    private byte[] myLocalNext;
+
+    /**
+     * Creates a blocker for a rule
+     * @param topology grid size, neighborhood and boundary mode
+     * @param table next state for each state and count, indexed by state * PlaneKernel.STRIDE + count
+     * @param counted the state whose neighbors are counted
+     * @param tileSize width of the tiles
+     * @param depth largest number of generations a tile is advanced at once
+     * @throws ConfigurationException if the grid is not supported or the sizes are not positive
+     */
+    public TemporalBlocker(Topology topology, byte[] table, int counted, int tileSize, int depth) {
+        if (!supports(topology)) {
+            throw new ConfigurationException("Temporal blocking needs a finite or toroidal rowMajor grid.");
+        }
+        if (tileSize < 1 || depth < 1) {
+            throw new ConfigurationException("Invalid temporal blocking size.");
+        }
+        myTopology = topology;
+        myCounted = counted;
+        myTileSize = tileSize;
+        myDepth = depth;
+        myReach = topology.getReach();
+
+        // add a row for the frozen state, which maps to itself whatever its neighbors are
+        myFrozen = table.length / PlaneKernel.STRIDE;
+        myTable = new byte[table.length + PlaneKernel.STRIDE];
+        System.arraycopy(table, 0, myTable, 0, table.length);
+        for (int count = 0; count < PlaneKernel.STRIDE; count++) {
+            myTable[table.length + count] = (byte) myFrozen;
+        }
+
+        myStride = tileSize + 2 * depth * myReach;
+        myLocal = new byte[myStride * myStride];
+        myLocalNext = new byte[myStride * myStride];
+        int[][] offsets = topology.getOffsets();
+        myShifts = new int[offsets.length];
+        for (int n = 0; n < offsets.length; n++) {
+            myShifts[n] = offsets[n][0] * myStride + offsets[n][1];
+        }
+    }
+
+    /**
+     * Creates a blocker sized by the blockSize and blockDepth parameters of the XML file
+     * @param data SimulationData object holding parsed information
+     * @param topology grid size, neighborhood and boundary mode
+     * @param table next state for each state and count, indexed by state * PlaneKernel.STRIDE + count
+     * @param counted the state whose neighbors are counted
+     * @return the blocker
+     */
+    public static TemporalBlocker create(SimulationData data, Topology topology, byte[] table, int counted) {
+        return new TemporalBlocker(topology, table, counted,
+                Integer.parseInt(data.getOptionalParameter(BLOCK_SIZE, DEFAULT_SIZE)),
+                Integer.parseInt(data.getOptionalParameter(BLOCK_DEPTH, DEFAULT_DEPTH)));
+    }
+
+    /**
+     * Tells whether a grid can be temporally blocked
+     * @param topology grid size, neighborhood, boundary mode and layout
+     * @return true for finite or toroidal grids laid out row by row
+     */
+    public static boolean supports(Topology topology) {
+        return topology.isRowMajor() && !topology.getBoundary().equals(Topology.REFLECTIVE);
+    }
+
+    public int getDepth() {
+        return myDepth;
+    }
+
+    /**
+     * Advances the whole grid by up to getDepth() generations
+     * @param states row by row states before, left unchanged
+     * @param next row by row array that receives the states after
+     * @param generations number of generations, from 1 to getDepth()
+     */
+    public void advance(byte[] states, byte[] next, int generations) {
+        int rows = myTopology.getRows();
+        int cols = myTopology.getCols();
+        for (int r0 = 0; r0 < rows; r0 += myTileSize) {
+            for (int c0 = 0; c0 < cols; c0 += myTileSize) {
+                advanceTile(states, next, r0, c0, generations);
+            }
+        }
+    }
+
+    private void advanceTile(byte[] states, byte[] next, int r0, int c0, int generations) {
+        int rows = myTopology.getRows();
+        int cols = myTopology.getCols();
+        int halo = generations * myReach;
+        int height = Math.min(myTileSize, rows - r0) + 2 * halo;
+        int width = Math.min(myTileSize, cols - c0) + 2 * halo;
+        boolean finite = myTopology.getBoundary().equals(Topology.FINITE);
+
+        // copy the tile and its halo, wrapped on a torus and frozen past the edge of a finite grid
+        for (int lr = 0; lr < height; lr++) {
+            int r = myTopology.resolveRow(r0 - halo + lr);
+            for (int lc = 0; lc < width; lc++) {
+                int c = myTopology.resolveCol(c0 - halo + lc);
+                boolean outside = finite && (r < 0 || r >= rows || c < 0 || c >= cols);
+                myLocal[lr * myStride + lc] = outside ? (byte) myFrozen : states[r * cols + c];
+            }
+        }
+
+        // every generation the cells within reach of the shrinking border no longer have all their neighbors
+        for (int g = 1; g <= generations; g++) {
+            int margin = g * myReach;
+            for (int lr = margin; lr < height - margin; lr++) {
+                int base = lr * myStride;
+                for (int lc = margin; lc < width - margin; lc++) {
+                    int cell = base + lc;
+                    int count = 0;
+                    for (int shift : myShifts) {
+                        count += myLocal[cell + shift] == myCounted ? 1 : 0;
+                    }
+                    myLocalNext[cell] = myTable[myLocal[cell] * PlaneKernel.STRIDE + count];
+                }
+            }
+            byte[] temp = myLocal;
+            myLocal = myLocalNext;
+            myLocalNext = temp;
+        }
+
+        for (int lr = halo; lr < height - halo; lr++) {
+            int row = r0 + lr - halo;
+            System.arraycopy(myLocal, lr * myStride + halo, next, row * cols + c0, width - 2 * halo);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package EnginePackage;
+
+import XMLPackage.SimulationData;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * This class estimates the site percolation threshold of a grid with the Newman-Ziff algorithm instead of rerunning
+ * the Percolation simulation with different open probabilities. Each trial opens the sites one at a time in a random
+ * order, joining every new site to its open neighbors with weighted union-find, and records the fraction of open
+ * sites at the moment an open cluster first connects the top row to the bottom row. Trials are independent, so they
+ * run in parallel, and the threshold is reported as their mean with a 95% confidence interval.
+ *
+ * The grid size and neighborhood come from the XML file, so any percolation configuration can be analyzed. The grid is
+ * always finite whatever the boundary in the file, since on a toroidal grid the top row wraps onto the bottom one and
+ * any single open column would span. Run it with the file name and an optional number of trials, e.g.
+ * "percolation.xml 1000".
+ */
+public class ThresholdEstimator {
+    private static final double Z_95 = 1.96;
+    private static final int DEFAULT_TRIALS = 1000;
+
+    private Topology myTopology;
+    private long mySeed;
+    private double myThreshold;
+    private double myStandardDeviation;
+    private int myTrials;
+
+    /**
+     * Creates an estimator for a grid
+     * @param topology grid size and neighborhood to analyze, with a finite boundary
+     * @param seed seed of the trial random streams, so an estimate can be reproduced
+     */
+    public ThresholdEstimator(Topology topology, long seed) {
+        myTopology = topology;
+        mySeed = seed;
+    }
+
+    /**
+     * Runs the trials and stores the estimate
+     * @param trials number of independent trials
+     */
+    public void estimate(int trials) {
+        myTrials = trials;
+        double[] thresholds = IntStream.range(0, trials).parallel()
+                .mapToDouble(t -> runTrial(new SplittableRandom(mySeed + t))).toArray();
+        double sum = 0;
+        for (double p : thresholds) {
+            sum += p;
+        }
+        myThreshold = sum / trials;
+        double squares = 0;
+        for (double p : thresholds) {
+            squares += (p - myThreshold) * (p - myThreshold);
+        }
+        myStandardDeviation = trials > 1 ? Math.sqrt(squares / (trials - 1)) : 0;
+    }
+
+    private double runTrial(SplittableRandom random) {
+        int size = myTopology.size();
+        int top = size;
+        int bottom = size + 1;
+        var sets = new UnionFind(size + 2);
+        var open = new boolean[size];
+        var neighbors = new int[myTopology.getMaxNeighbors()];
+
+        int[] order = new int[size];
+        for (int k = 0; k < size; k++) {
+            order[k] = k;
+        }
+        for (int k = 0; k < size; k++) {
+            int cell = pick(order, k, random);
+            open[cell] = true;
+            if (myTopology.row(cell) == 0) {
+                sets.union(cell, top);
+            }
+            if (myTopology.row(cell) == myTopology.getRows() - 1) {
+                sets.union(cell, bottom);
+            }
+            joinOpen(cell, neighbors, myTopology.neighbors(cell, neighbors), open, sets);
+            joinOpen(cell, neighbors, myTopology.reverseNeighbors(cell, neighbors), open, sets);
+            if (sets.connected(top, bottom)) {
+                return (k + 1) / (double) size;
+            }
+        }
+        return 1;
+    }
+
+    private int pick(int[] order, int k, SplittableRandom random) {
+        // lazy Fisher-Yates, the sites are shuffled as they are opened
+        int j = k + random.nextInt(order.length - k);
+        int cell = order[j];
+        order[j] = order[k];
+        order[k] = cell;
+        return cell;
+    }
+
+    private void joinOpen(int cell, int[] neighbors, int count, boolean[] open, UnionFind sets) {
+        for (int n = 0; n < count; n++) {
+            if (open[neighbors[n]]) {
+                sets.union(cell, neighbors[n]);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated threshold
+     * @return mean fraction of open sites at which the grid starts to span
+     */
+    public double getThreshold() {
+        return myThreshold;
+    }
+
+    public double getStandardDeviation() {
+        return myStandardDeviation;
+    }
+
+    /**
+     * Returns the lower end of the 95% confidence interval of the threshold
+     * @return lower bound of the interval
+     */
+    public double getConfidenceLow() {
+        return myThreshold - Z_95 * myStandardDeviation / Math.sqrt(myTrials);
+    }
+
+    /**
+     * Returns the upper end of the 95% confidence interval of the threshold
+     * @return upper bound of the interval
+     */
+    public double getConfidenceHigh() {
+        return myThreshold + Z_95 * myStandardDeviation / Math.sqrt(myTrials);
+    }
+
+    /**
+     * Estimates the threshold of the grid described by an XML file in the data directory and prints it
+     * @param args XML file name, then optionally the number of trials
+     * @throws Exception if the file can't be parsed
+     */
+    public static void main(String[] args) throws Exception {
+        var data = new SimulationData(args[0]);
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRIALS;
+        var estimator = new ThresholdEstimator(
+                new Topology((int) data.getRows(), (int) data.getCols(), data.getNeighborType()), System.nanoTime());
+        estimator.estimate(trials);
+        System.out.printf("%s, %d trials: threshold %.5f, 95%% interval [%.5f, %.5f]%n", args[0], trials,
+                estimator.getThreshold(), estimator.getConfidenceLow(), estimator.getConfidenceHigh());
+    }
+}
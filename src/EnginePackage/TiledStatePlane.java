@@ -0,0 +1,128 @@
+package EnginePackage;
+
+import XMLPackage.SimulationData;
+
+import java.util.Arrays;
+
+/**
+ * A StatePlane that compresses uniform regions. The plane is cut into tiles of TILE_SIZE consecutive cells, and a
+ * tile whose cells all hold the same value is stored as that single value. It is only given a full array when a cell
+ * inside it is set to something else. Burnt out forests and blocked areas of a Percolation grid are long runs of one
+ * state, so most of such a grid costs a byte per tile instead of a byte per cell. With the rowMajor
+ * layout a tile is a piece of a few rows, with morton it is a square patch.
+ *
+ * Tiles that become uniform again are compressed back by compact(), which runs by itself once there have been about
+ * as many writes as there are cells in materialized tiles. It only looks at the materialized tiles, which are kept in
+ * a list, so it costs a constant amount per write however many uniform tiles the grid has.
+ *
+ * Select it with <storage>tiled</storage>.
+ */
+public class TiledStatePlane extends StatePlane {
+    private static final int TILE_SHIFT = 10;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int REFERENCE_BYTES = 8;
+
+    private byte[][] myTiles;
+    private byte[] myUniform;
+    private int[] myMaterialized;
+    private int myMaterializedCount;
+    private long myWrites;
+
+    public TiledStatePlane(SimulationData data, int size, String name) {
+        super(size);
+        int tiles = (int) (((long) size + TILE_SIZE - 1) >> TILE_SHIFT);
+        myTiles = new byte[tiles][];
+        myUniform = new byte[tiles];
+        myMaterialized = new int[Math.min(tiles, TILE_SIZE)];
+    }
+
+    @Override
+    public int get(int index) {
+        byte[] tile = myTiles[index >>> TILE_SHIFT];
+        return tile == null ? myUniform[index >>> TILE_SHIFT] : tile[index & TILE_MASK];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        int t = index >>> TILE_SHIFT;
+        if (myTiles[t] == null) {
+            if (myUniform[t] == value) {
+                return;
+            }
+            materialize(t);
+        }
+        myTiles[t][index & TILE_MASK] = (byte) value;
+        if (++myWrites > (long) myMaterializedCount * TILE_SIZE) {
+            compact();
+        }
+    }
+
+    @Override
+    public void fill(int value) {
+        for (int t = 0; t < myTiles.length; t++) {
+            myTiles[t] = null;
+            myUniform[t] = (byte) value;
+        }
+        myMaterializedCount = 0;
+    }
+
+    private void materialize(int t) {
+        int length = (int) Math.min(TILE_SIZE, mySize - ((long) t << TILE_SHIFT));
+        myTiles[t] = new byte[length];
+        if (myUniform[t] != 0) {
+            Arrays.fill(myTiles[t], myUniform[t]);
+        }
+        if (myMaterializedCount == myMaterialized.length) {
+            myMaterialized = Arrays.copyOf(myMaterialized, Math.min(myTiles.length, myMaterializedCount * 2));
+        }
+        myMaterialized[myMaterializedCount++] = t;
+    }
+
+    /**
+     * Turns every materialized tile whose cells are all equal back into a single value
+     */
+    public void compact() {
+        int kept = 0;
+        for (int m = 0; m < myMaterializedCount; m++) {
+            int t = myMaterialized[m];
+            if (isUniform(myTiles[t])) {
+                myUniform[t] = myTiles[t][0];
+                myTiles[t] = null;
+            }
+            else {
+                myMaterialized[kept++] = t;
+            }
+        }
+        myMaterializedCount = kept;
+        myWrites = 0;
+    }
+
+    private boolean isUniform(byte[] tile) {
+        byte first = tile[0];
+        for (byte cell : tile) {
+            if (cell != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getTileCount() {
+        return myTiles.length;
+    }
+
+    public int getMaterializedTiles() {
+        return myMaterializedCount;
+    }
+
+    /**
+     * Counts the materialized cells, the one byte value of every tile and the reference to each tile's array
+     * @return bytes used by the plane
+     */
+    @Override
+    public long getFootprint() {
+        return (long) myMaterializedCount * TILE_SIZE + (long) myTiles.length * (1 + REFERENCE_BYTES)
+                + (long) myMaterialized.length * Integer.BYTES;
+    }
+}
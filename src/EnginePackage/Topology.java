@@ -0,0 +1,435 @@
+package EnginePackage;
+
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+/**
+ * The Topology class describes the shape of the grid an engine runs on: its size, how a row and column map to an
+ * index into the engine's state arrays, and which indices are the neighbors of a given index. Engines only talk to
+ * their state arrays through these indices, so they never need to know how the grid is laid out.
+ *
+ * The boundary parameter decides what lies past the edge of the grid. With finite, the default, nothing does and
+ * edge cells simply have fewer neighbors. With toroidal the grid wraps around, so the cell past the right edge is the
+ * first cell of the same row. With reflective the grid is mirrored at its edges, so the cell just past an edge is the
+ * edge cell itself, as if the grid were surrounded by a copy of its own border.
+ *
+ * The layout parameter decides the order of the cells in the state arrays. With rowMajor, the default, index(row, col)
+ * is row * cols + col like Cell.getIndex(). With morton the grid is stored in 8 by 8 blocks, one after the other, and
+ * the cells of a full block in Z-order, so the rows above and below a cell are usually in the same block instead of a
+ * whole row away. Index translation is done here, through a table, so engines that only reach cells through
+ * index(), neighbors() and reverseNeighbors() work with either layout. toStorage() and toLogical() convert between
+ * these indices and the row by row ones used by the cells.
+ */
+public class Topology {
+    public static final String BOUNDARY = "boundary";
+    public static final String FINITE = "finite";
+    public static final String TOROIDAL = "toroidal";
+    public static final String REFLECTIVE = "reflective";
+    public static final String LAYOUT = "layout";
+    public static final String ROW_MAJOR = "rowMajor";
+    public static final String MORTON = "morton";
+    private static final int BLOCK = 8;
+
+    private int myRows;
+    private int myCols;
+    private int[][] myOffsets;
+    private int[] myDeltas;
+    private String myBoundary;
+    private int myReach;
+    private int[][] myReverse;
+    private String myLayout;
+    private int[] myStorage;
+    private int[] myLogical;
+
+    /**
+     * Creates the topology described by the parsed XML file
+     * @param data SimulationData object holding parsed information
+     */
+    public Topology(SimulationData data) {
+        this((int) data.getRows(), (int) data.getCols(), data.getNeighborType(),
+                data.getOptionalParameter(BOUNDARY, FINITE), data.getOptionalParameter(LAYOUT, ROW_MAJOR));
+    }
+
+    /**
+     * Creates a finite topology from its dimensions and neighborhood name
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param neighborType one of neighbors4, neighbors6, neighbors8 or neighbors12
+     */
+    public Topology(int rows, int cols, String neighborType) {
+        this(rows, cols, neighborType, FINITE);
+    }
+
+    /**
+     * Creates a topology from its dimensions, neighborhood name and boundary mode
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param neighborType one of neighbors4, neighbors6, neighbors8 or neighbors12
+     * @param boundary one of finite, toroidal or reflective
+     * @throws ConfigurationException if the boundary is unknown or the grid is smaller than the neighborhood
+     */
+    public Topology(int rows, int cols, String neighborType, String boundary) {
+        this(rows, cols, neighborType, boundary, ROW_MAJOR);
+    }
+
+    /**
+     * Creates a topology from its dimensions, neighborhood name, boundary mode and memory layout
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param neighborType one of neighbors4, neighbors6, neighbors8 or neighbors12
+     * @param boundary one of finite, toroidal or reflective
+     * @param layout rowMajor or morton
+     * @throws ConfigurationException if the boundary or layout is unknown or the grid is smaller than the neighborhood
+     */
+    public Topology(int rows, int cols, String neighborType, String boundary, String layout) {
+        myRows = rows;
+        myCols = cols;
+        myOffsets = offsets(neighborType);
+        myBoundary = boundary;
+        myDeltas = new int[myOffsets.length];
+        for (int n = 0; n < myOffsets.length; n++) {
+            myReach = Math.max(myReach, Math.max(Math.abs(myOffsets[n][0]), Math.abs(myOffsets[n][1])));
+            myDeltas[n] = myOffsets[n][0] * cols + myOffsets[n][1];
+        }
+        if (!boundary.equals(FINITE) && !boundary.equals(TOROIDAL) && !boundary.equals(REFLECTIVE)) {
+            throw new ConfigurationException("Invalid boundary.");
+        }
+        if (!boundary.equals(FINITE) && (rows < myReach || cols < myReach)) {
+            throw new ConfigurationException("Grid is too small for its boundary.");
+        }
+        myLayout = layout;
+        if (layout.equals(MORTON)) {
+            buildLayout();
+        }
+        else if (!layout.equals(ROW_MAJOR)) {
+            throw new ConfigurationException("Invalid layout.");
+        }
+        if (boundary.equals(REFLECTIVE)) {
+            buildReverse();
+        }
+    }
+
+    private void buildLayout() {
+        myStorage = new int[size()];
+        myLogical = new int[size()];
+        for (int i = 0; i < myRows; i++) {
+            for (int j = 0; j < myCols; j++) {
+                // blocks are stored row by row, and a block row holds height * cols cells
+                int height = Math.min(BLOCK, myRows - i / BLOCK * BLOCK);
+                int width = Math.min(BLOCK, myCols - j / BLOCK * BLOCK);
+                int start = i / BLOCK * BLOCK * myCols + j / BLOCK * BLOCK * height;
+                int r = i % BLOCK;
+                int c = j % BLOCK;
+                int inside = height == BLOCK && width == BLOCK ? interleave(r, c) : r * width + c;
+                myStorage[i * myCols + j] = start + inside;
+                myLogical[start + inside] = i * myCols + j;
+            }
+        }
+    }
+
+    private int interleave(int r, int c) {
+        int code = 0;
+        for (int bit = 0; (BLOCK >> bit) > 1; bit++) {
+            code |= ((c >> bit) & 1) << (2 * bit);
+            code |= ((r >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
+    private void buildReverse() {
+        // mirroring is not one-to-one, so the cells that see a given cell are found by looking at every cell once
+        var counts = new int[size()];
+        var buffer = new int[myOffsets.length];
+        for (int k = 0; k < size(); k++) {
+            int total = neighbors(k, buffer);
+            for (int n = 0; n < total; n++) {
+                counts[buffer[n]]++;
+            }
+        }
+        myReverse = new int[size()][];
+        for (int k = 0; k < size(); k++) {
+            myReverse[k] = new int[counts[k]];
+            counts[k] = 0;
+        }
+        for (int k = 0; k < size(); k++) {
+            int total = neighbors(k, buffer);
+            for (int n = 0; n < total; n++) {
+                myReverse[buffer[n]][counts[buffer[n]]++] = k;
+            }
+        }
+    }
+
+    /**
+     * Gives the relative {row, column} offsets of the neighbors in a neighborhood. Shared with the CellManager so
+     * cells and engines always agree on who the neighbors are.
+     * @param neighborType one of neighbors4, neighbors6, neighbors8 or neighbors12
+     * @return array of {row, column} offsets
+     */
+    public static int[][] offsets(String neighborType) {
+        if (neighborType.equals("neighbors8")) {
+            return new int[][]{
+                            {-1,-1}, {-1, 0}, {-1, 1},
+                             {0, -1},         {0, 1},
+                             {1, -1}, {1, 0}, {1, 1}};
+        }
+        else if(neighborType.equals("neighbors4")) {
+            return new int[][]{
+                                    {-1, 0},
+                            {0, -1},         {0, 1},
+                                     {1, 0}         };
+        }
+        else if(neighborType.equals("neighbors12")) {
+            return new int[][]{
+                                    {-1, -1}, {-1, 0}, {-1, 1},
+                            {0, -2}, {0, -1},       {0, 1}, {0, 2},
+                            {1, -2}, {1, -2},       {1, 1}, {1, 2}
+
+            };
+        }
+        else if(neighborType.equals("neighbors6")) {
+            return new int[][]{
+                                {-1, 0},
+                    {0, -1},            {0, 1},
+                    {1, -1},            {1,1},
+                                {1, 0}
+
+            };
+        }
+        throw new ConfigurationException("Invalid neighbor type.");
+    }
+
+    public int getRows() {
+        return myRows;
+    }
+
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the number of cells in the grid
+     * @return rows * columns
+     */
+    public int size() {
+        return myRows * myCols;
+    }
+
+    /**
+     * Returns the largest number of neighbors a cell can have, useful to size neighbor buffers
+     * @return number of offsets in the neighborhood, or more if mirroring makes some cell seen more often
+     */
+    public int getMaxNeighbors() {
+        int max = myOffsets.length;
+        if (myReverse != null) {
+            for (int[] reverse : myReverse) {
+                max = Math.max(max, reverse.length);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Tells whether every neighbor link goes both ways, that is whether the opposite of every offset is an offset too
+     * @return true for neighbors4 and neighbors8, false for the triangle and hexagon tables
+     */
+    public boolean isSymmetric() {
+        for (int[] offset : myOffsets) {
+            boolean found = false;
+            for (int[] other : myOffsets) {
+                found |= other[0] == -offset[0] && other[1] == -offset[1];
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getBoundary() {
+        return myBoundary;
+    }
+
+    /**
+     * Returns how far the neighborhood reaches from a cell, which is also the width of the ghost border a plane
+     * needs to read every neighbor without a bounds check
+     * @return largest row or column offset
+     */
+    public int getReach() {
+        return myReach;
+    }
+
+    /**
+     * Maps a row that may lie past the edge of the grid back onto the grid according to the boundary mode. With a
+     * finite boundary the row is returned as is, and the caller must drop it if it is off the grid.
+     * @param row row, at most getReach() past an edge
+     * @return row on the grid
+     */
+    public int resolveRow(int row) {
+        return resolve(row, myRows);
+    }
+
+    /**
+     * Maps a column that may lie past the edge of the grid back onto the grid, like resolveRow()
+     * @param col column, at most getReach() past an edge
+     * @return column on the grid
+     */
+    public int resolveCol(int col) {
+        return resolve(col, myCols);
+    }
+
+    private int resolve(int value, int length) {
+        if (myBoundary.equals(TOROIDAL)) {
+            return Math.floorMod(value, length);
+        }
+        if (myBoundary.equals(REFLECTIVE)) {
+            if (value < 0) {
+                return -value - 1;
+            }
+            if (value >= length) {
+                return 2 * length - value - 1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the {row, column} offsets of the neighborhood
+     * @return array of offsets, one per neighbor
+     */
+    public int[][] getOffsets() {
+        return myOffsets;
+    }
+
+    /**
+     * Converts a row and column into an index
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return index of the cell
+     */
+    public int index(int row, int col) {
+        return myStorage == null ? row * myCols + col : myStorage[row * myCols + col];
+    }
+
+    public int row(int index) {
+        return toLogical(index) / myCols;
+    }
+
+    public int col(int index) {
+        return toLogical(index) % myCols;
+    }
+
+    public String getLayout() {
+        return myLayout;
+    }
+
+    /**
+     * Tells whether indices count row by row, which the dense plane engines rely on
+     * @return true for the rowMajor layout
+     */
+    public boolean isRowMajor() {
+        return myStorage == null;
+    }
+
+    /**
+     * Converts a row by row index, such as Cell.getIndex(), into an index of this topology
+     * @param logical row * cols + col
+     * @return index of the same cell in this layout
+     */
+    public int toStorage(int logical) {
+        return myStorage == null ? logical : myStorage[logical];
+    }
+
+    /**
+     * Converts an index of this topology into a row by row index, such as Cell.getIndex()
+     * @param index index in this layout
+     * @return row * cols + col of the same cell
+     */
+    public int toLogical(int index) {
+        return myLogical == null ? index : myLogical[index];
+    }
+
+    /**
+     * Reorders a row by row array of states into this layout
+     * @param states row by row states
+     * @return the same states in this layout
+     */
+    public int[] toStorage(int[] states) {
+        if (myStorage == null) {
+            return states;
+        }
+        var ordered = new int[states.length];
+        for (int k = 0; k < states.length; k++) {
+            ordered[myStorage[k]] = states[k];
+        }
+        return ordered;
+    }
+
+    /**
+     * Writes the indices of the neighbors of a cell into a buffer. With a finite boundary neighbors falling outside
+     * the grid are dropped, otherwise they are mapped back onto the grid, so with reflective a cell can be listed
+     * more than once or be its own neighbor. Only cells within getReach() of an edge go through this, the others add
+     * a precomputed distance for each offset. The CellManager builds the neighbor lists of the cells from this too.
+     * @param index index of the cell
+     * @param out buffer of at least getMaxNeighbors() entries
+     * @return number of neighbors written
+     */
+    public int neighbors(int index, int[] out) {
+        int logical = toLogical(index);
+        int i = logical / myCols;
+        int j = logical - i * myCols;
+        if (isInterior(i, j)) {
+            for (int n = 0; n < myDeltas.length; n++) {
+                out[n] = toStorage(logical + myDeltas[n]);
+            }
+            return myDeltas.length;
+        }
+        int count = 0;
+        for (int[] offset : myOffsets) {
+            int r = resolveRow(i + offset[0]);
+            int c = resolveCol(j + offset[1]);
+            if (r < myRows && r >= 0 && c < myCols && c >= 0) {
+                out[count++] = index(r, c);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the indices of the cells that have the given cell as one of their neighbors. This is the same as
+     * neighbors() for symmetric neighborhoods, but the triangle and hexagon tables are not symmetric, so engines that
+     * push information out from a cell use this one.
+     * @param index index of the cell
+     * @param out buffer of at least getMaxNeighbors() entries
+     * @return number of cells written
+     */
+    public int reverseNeighbors(int index, int[] out) {
+        if (myReverse != null) {
+            System.arraycopy(myReverse[index], 0, out, 0, myReverse[index].length);
+            return myReverse[index].length;
+        }
+        int logical = toLogical(index);
+        int i = logical / myCols;
+        int j = logical - i * myCols;
+        if (isInterior(i, j)) {
+            for (int n = 0; n < myDeltas.length; n++) {
+                out[n] = toStorage(logical - myDeltas[n]);
+            }
+            return myDeltas.length;
+        }
+        int count = 0;
+        for (int[] offset : myOffsets) {
+            int r = resolveRow(i - offset[0]);
+            int c = resolveCol(j - offset[1]);
+            if (r < myRows && r >= 0 && c < myCols && c >= 0) {
+                out[count++] = index(r, c);
+            }
+        }
+        return count;
+    }
+
+    private boolean isInterior(int row, int col) {
+        // every neighbor of a cell this far from the edges is on the grid, a fixed distance away in the row by row
+        // order, so it needs no boundary mapping or bounds check
+        return row >= myReach && row < myRows - myReach && col >= myReach && col < myCols - myReach;
+    }
+}
@@ -0,0 +1,76 @@
+package EnginePackage;
+
+import java.util.Arrays;
+
+/**
+ * Weighted union-find with path halving over the integers [0, size). Used by the engines to answer connectivity
+ * questions about the grid, such as which cells are connected to a percolated cell.
+ */
+public class UnionFind {
+    private int[] myParent;
+    private int[] mySize;
+
+    public UnionFind(int size) {
+        myParent = new int[size];
+        mySize = new int[size];
+        reset();
+    }
+
+    /**
+     * Puts every element back into its own set
+     */
+    public void reset() {
+        for (int i = 0; i < myParent.length; i++) {
+            myParent[i] = i;
+        }
+        Arrays.fill(mySize, 1);
+    }
+
+    /**
+     * Finds the representative of the set holding an element
+     * @param element the element
+     * @return the root of its set
+     */
+    public int find(int element) {
+        while (myParent[element] != element) {
+            myParent[element] = myParent[myParent[element]];
+            element = myParent[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets of two elements, hanging the smaller tree under the larger one
+     * @param a first element
+     * @param b second element
+     * @return the root of the merged set
+     */
+    public int union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (mySize[rootA] < mySize[rootB]) {
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        myParent[rootB] = rootA;
+        mySize[rootA] += mySize[rootB];
+        return rootA;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /**
+     * Returns how many elements are in the set holding an element
+     * @param element the element
+     * @return size of its set
+     */
+    public int setSize(int element) {
+        return mySize[find(element)];
+    }
+}
@@ -0,0 +1,90 @@
+package EnginePackage;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * The PlaneKernel written with the Vector API. Neighbor sums keep one register of running totals per group of
+ * columns and add the plane at every offset into it before storing it once, so each count is written a single time
+ * instead of once per neighbor. The rule is applied by loading each row of the table into a register and using the
+ * counts as a shuffle, which looks up a whole register of cells at once, and then blending the rows by state.
+ *
+ * This class needs the jdk.incubator.vector module to load. PlaneKernel.create() falls back to ScalarPlaneKernel
+ * when it can't.
+ */
+public class VectorPlaneKernel extends PlaneKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Creates the kernel
+     * @throws UnsupportedOperationException if a vector can't hold a full row of a rule table
+     */
+    public VectorPlaneKernel() {
+        if (SPECIES.length() < STRIDE) {
+            throw new UnsupportedOperationException("Vectors are too short for the rule table.");
+        }
+    }
+
+    @Override
+    public void countNeighbors(GhostPlane plane, int[][] offsets, byte[] counts) {
+        byte[] cells = plane.getCells();
+        int rows = plane.getRows();
+        int cols = plane.getCols();
+        int[] shifts = new int[offsets.length];
+        for (int n = 0; n < offsets.length; n++) {
+            shifts[n] = plane.shift(offsets[n]);
+        }
+        int bound = SPECIES.loopBound(cols);
+        for (int r = 0; r < rows; r++) {
+            int base = r * cols;
+            int origin = plane.index(r, 0);
+            int c = 0;
+            for (; c < bound; c += SPECIES.length()) {
+                var sum = ByteVector.zero(SPECIES);
+                for (int shift : shifts) {
+                    sum = sum.add(ByteVector.fromArray(SPECIES, cells, origin + shift + c));
+                }
+                sum.intoArray(counts, base + c);
+            }
+            for (; c < cols; c++) {
+                byte sum = 0;
+                for (int shift : shifts) {
+                    sum += cells[origin + shift + c];
+                }
+                counts[base + c] = sum;
+            }
+        }
+    }
+
+    @Override
+    public void applyRule(byte[] states, byte[] counts, byte[] table, byte[] next) {
+        int stateCount = table.length / STRIDE;
+        var rows = new ByteVector[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            byte[] row = Arrays.copyOf(Arrays.copyOfRange(table, s * STRIDE, (s + 1) * STRIDE), SPECIES.length());
+            rows[s] = ByteVector.fromArray(SPECIES, row, 0);
+        }
+        int bound = SPECIES.loopBound(states.length);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            var state = ByteVector.fromArray(SPECIES, states, k);
+            VectorShuffle<Byte> count = ByteVector.fromArray(SPECIES, counts, k).toShuffle();
+            var result = rows[0].rearrange(count);
+            for (int s = 1; s < stateCount; s++) {
+                result = result.blend(rows[s].rearrange(count), state.eq((byte) s));
+            }
+            result.intoArray(next, k);
+        }
+        for (; k < states.length; k++) {
+            next[k] = table[states[k] * STRIDE + counts[k]];
+        }
+    }
+
+    @Override
+    public int getLanes() {
+        return SPECIES.length();
+    }
+}
@@ -1,11 +1,20 @@
 package Grid;
 
 import CellPackage.Cell;
+import EnginePackage.ChangeLog;
+import EnginePackage.Checkpoint;
+import EnginePackage.Engine;
+import EnginePackage.Topology;
+import Exceptions.ConfigurationException;
 import XMLPackage.SimulationData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * The CellGrid class holds references on all the CellSpaces that live within it. It is responsible for creating
@@ -25,9 +34,33 @@ public class CellGrid {
 
     private SimulationData mySimulationData;
     private static final int EMPTY = 0;
+    private static final String MOVE_MODE = "moveMode";
+    private static final String PROPOSE_COMMIT = "proposeCommit";
+    private static final String BATCH_RELOCATION = "batchRelocation";
+    private static final String TILE_SIZE = "tileSize";
+    private static final int MIN_TILE_SIZE = 2;
+    private static final long HASH_SEED = 0x5DEECE66DL;
 
     private ArrayList<String> myStates;
 
+    private Cell[] myCells;
+    private String myMoveMode;
+    private MoveArbiter myArbiter;
+    private Random myRandom = new Random();
+    private List<? extends Cell> myVacancies;
+    private Engine myEngine;
+
+    private int myTileSize;
+    private int myTileRows;
+    private int myTileCols;
+    private boolean[] myActiveTiles;
+    private boolean[] myWrittenTiles;
+    private boolean[] myChangedTiles;
+    private boolean[] myRestlessTiles;
+    private int myActiveTileCount;
+    private boolean wrapTiles;
+    private ZobristHash myHash;
+
      /**
      * Creates a 2D array of CellSpaces given information on the simulation size, etc. given by SimulationData
      * @param data SimulationData object holding parsed information
@@ -45,7 +78,42 @@ public class CellGrid {
 
         myStates = data.getStateNames();
 
+        myMoveMode = data.getOptionalParameter(MOVE_MODE, "");
+        if (myMoveMode.equals(PROPOSE_COMMIT)) {
+            myArbiter = new MoveArbiter(myRows * myCols);
+        }
 
+        myTileSize = Integer.parseInt(data.getOptionalParameter(TILE_SIZE, "0"));
+        if (myTileSize != 0) {
+            createTiles();
+        }
+    }
+
+    /**
+     * Splits the grid into square tiles that can sleep. A tile is only active if it or one of the 8 tiles around it
+     * changed last generation, and inactive tiles are skipped entirely when updating, swapping and displaying. This
+     * is meant for rules where a cell can only change when something near it changed, such as Fire, Percolation or
+     * Segregation; cells written by a move into a sleeping tile still get applied, and a tile holding an agent that
+     * wants to move but found nowhere to go stays awake so the agent keeps trying. Tiles are at least 2 cells wide so
+     * the neighbor tiles cover every neighborhood.
+     */
+    private void createTiles() {
+        if (myTileSize < MIN_TILE_SIZE) {
+            throw new ConfigurationException("Invalid tile size.");
+        }
+        myTileRows = (myRows + myTileSize - 1) / myTileSize;
+        myTileCols = (myCols + myTileSize - 1) / myTileSize;
+        myActiveTiles = new boolean[myTileRows * myTileCols];
+        myWrittenTiles = new boolean[myTileRows * myTileCols];
+        myChangedTiles = new boolean[myTileRows * myTileCols];
+        myRestlessTiles = new boolean[myTileRows * myTileCols];
+        Arrays.fill(myActiveTiles, true);
+        myActiveTileCount = myActiveTiles.length;
+        // on a torus a change at one edge reaches the cells at the other one, which must then be in the next tile
+        wrapTiles = mySimulationData.getOptionalParameter(Topology.BOUNDARY, Topology.FINITE).equals(Topology.TOROIDAL);
+        if (wrapTiles && (myRows % myTileSize == 1 || myCols % myTileSize == 1)) {
+            throw new ConfigurationException("Invalid tile size.");
+        }
     }
     /**
      * Allows the Simulation to access the global Grid
@@ -59,15 +127,20 @@ public class CellGrid {
      * @param cells 2D array of finished cells
      */
     public void fillCells(Cell[][] cells) {
+        myCells = new Cell[myRows * myCols];
         for (int i = 0; i < myRows; i++) {
             for (int j = 0; j < myCols; j++) {
                 var c = new CellSpace(this);
+                cells[i][j].setIndex(i * myCols + j);
+                myCells[i * myCols + j] = cells[i][j];
                 c.populateCell(cells[i][j]);
                 Position pos = getOffset(i, j);
                 c.moveSpace(pos.getX(), pos.getY());
                 myGrid[i][j] = c;
             }
         }
+        myHash = new ZobristHash(myCells.length, myStates.size(), HASH_SEED);
+        myHash.load(getStates());
     }
 
     private Position getOffset(int i, int j) {
@@ -101,22 +174,91 @@ public class CellGrid {
         }
         return empty;
     }
+    /**
+     * Returns the empty cells as they were at the start of the current propose/commit generation. Unlike
+     * getEmptyCells() this does not scan the grid, so it is cheap to call from every cell that wants to move.
+     * @return List of all cells whose state was empty when the generation started
+     */
+    public List<? extends Cell> getVacancies() {
+        return myVacancies;
+    }
+    /**
+     * Gives the state of every cell, used to load an engine
+     * @return row by row array of cell states
+     */
+    public int[] getStates() {
+        var states = new int[myCells.length];
+        for (int k = 0; k < myCells.length; k++) {
+            states[k] = myCells[k].getState();
+        }
+        return states;
+    }
+    /**
+     * Hands the rules over to an engine. From then on update() steps the engine and the cells are only used to
+     * display its transitions.
+     * @param engine loaded engine for this simulation
+     */
+    public void attachEngine(Engine engine) {
+        myEngine = engine;
+    }
+    /**
+     * Tells the engine, if there is one, that the user changed the state of a cell by clicking on it
+     * @param cell the cell that was changed
+     */
+    public void cellEdited(Cell cell) {
+        myHash.set(cell.getIndex(), cell.getState());
+        if (myEngine != null) {
+            myEngine.setState(myEngine.getTopology().toStorage(cell.getIndex()), cell.getState());
+        }
+        if (myActiveTiles != null) {
+            int tile = tileOf(cell.getIndex());
+            myChangedTiles[tile] = true;
+            wakeAround(tile / myTileCols, tile % myTileCols);
+        }
+    }
+    /**
+     * Called by a cell whenever its next state is written, so that a write landing in a sleeping tile is still
+     * applied at the end of the generation
+     * @param index index of the written cell
+     */
+    public void cellWritten(int index) {
+        if (myWrittenTiles != null) {
+            myWrittenTiles[tileOf(index)] = true;
+        }
+    }
     /**
      * Updates all cells in the grid
      */
     public void update() {
+        if (myEngine != null) {
+            myEngine.step();
+            showChanges(myEngine.getChanges());
+            return;
+        }
+
         // update all cells
-        for (CellSpace[] cs1 : myGrid) {
-            for (CellSpace cs2 : cs1) {
-                cs2.updateCell();
+        if (myActiveTiles != null && myMoveMode.isEmpty()) {
+            updateTiles();
+            return;
+        }
+        if (myMoveMode.equals(PROPOSE_COMMIT)) {
+            proposeAndCommit();
+        }
+        else if (myMoveMode.equals(BATCH_RELOCATION)) {
+            relocateBatch();
+        }
+        else {
+            for (CellSpace[] cs1 : myGrid) {
+                for (CellSpace cs2 : cs1) {
+                    cs2.updateCell();
+                }
             }
         }
 
         // convert cell state
-        for (CellSpace[] cs1 : myGrid) {
-            for (CellSpace cs2 : cs1) {
-                cs2.updateState();
-            }
+        for (int k = 0; k < myCells.length; k++) {
+            myCells[k].updateState();
+            myHash.set(k, myCells[k].getState());
         }
 
         // change display
@@ -127,6 +269,263 @@ public class CellGrid {
         }
     }
 
+    /**
+     * Advances several generations at once and only redraws the cells that ended up different. An engine can skip
+     * over the generations in between, without one the cells are simply updated that many times.
+     * @param generations number of generations to advance
+     */
+    public void fastForward(int generations) {
+        if (myEngine == null) {
+            for (int g = 0; g < generations; g++) {
+                update();
+            }
+            return;
+        }
+        myEngine.fastForward(generations);
+        showChanges(myEngine.getChanges());
+    }
+
+    /**
+     * Closes the engine, if there is one, once the grid is no longer shown
+     */
+    public void close() {
+        if (myEngine != null) {
+            myEngine.close();
+        }
+    }
+
+    /**
+     * Gives the generation the engine is at
+     * @return number of generations run, 0 without an engine
+     */
+    public int getGeneration() {
+        return myEngine == null ? 0 : myEngine.getGeneration();
+    }
+
+    /**
+     * Adds the state of the engine to a checkpoint
+     * @param checkpoint checkpoint of this grid
+     * @throws ConfigurationException if the grid has no engine
+     */
+    public void saveCheckpoint(Checkpoint checkpoint) {
+        if (myEngine == null) {
+            throw new ConfigurationException("Checkpoints need an engine.");
+        }
+        myEngine.saveCheckpoint(checkpoint);
+    }
+
+    /**
+     * Puts the engine back in the state of a checkpoint and redraws the cells that differ
+     * @param checkpoint checkpoint of a grid of the same size
+     * @throws ConfigurationException if the grid has no engine or the checkpoint is of another grid
+     */
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        if (myEngine == null) {
+            throw new ConfigurationException("Checkpoints need an engine.");
+        }
+        myEngine.restoreCheckpoint(checkpoint);
+        showChanges(myEngine.getChanges());
+    }
+
+    private void updateTiles() {
+        // update the cells of awake tiles
+        for (int t = 0; t < myActiveTiles.length; t++) {
+            if (myActiveTiles[t]) {
+                forEachCellInTile(t, Cell::updateCell);
+            }
+        }
+
+        // convert cell state wherever something may have been written, and remember which tiles changed
+        Arrays.fill(myChangedTiles, false);
+        for (int t = 0; t < myActiveTiles.length; t++) {
+            if (myActiveTiles[t] || myWrittenTiles[t]) {
+                final int tile = t;
+                forEachCellInTile(t, cell -> {
+                    int oldState = cell.getState();
+                    cell.updateState();
+                    if (cell.getState() != oldState) {
+                        myChangedTiles[tile] = true;
+                        myHash.set(cell.getIndex(), cell.getState());
+                    }
+                });
+            }
+        }
+
+        // change display, and find the tiles holding an agent that still wants to move, which tries again next
+        // generation even if nothing around it changes
+        Arrays.fill(myRestlessTiles, false);
+        for (int t = 0; t < myActiveTiles.length; t++) {
+            if (myActiveTiles[t] || myWrittenTiles[t]) {
+                final int tile = t;
+                forEachCellInTile(t, cell -> {
+                    cell.updateDisplay();
+                    if (cell.needsRelocation()) {
+                        myRestlessTiles[tile] = true;
+                    }
+                });
+            }
+        }
+        // wake the tiles around every change for the next generation, and keep the restless ones awake
+        Arrays.fill(myActiveTiles, false);
+        Arrays.fill(myWrittenTiles, false);
+        for (int t = 0; t < myChangedTiles.length; t++) {
+            if (myChangedTiles[t]) {
+                wakeAround(t / myTileCols, t % myTileCols);
+            }
+            if (myRestlessTiles[t]) {
+                myActiveTiles[t] = true;
+            }
+        }
+        myActiveTileCount = 0;
+        for (boolean active : myActiveTiles) {
+            if (active) {
+                myActiveTileCount++;
+            }
+        }
+    }
+
+    private void forEachCellInTile(int tile, Consumer<Cell> action) {
+        int rowStart = (tile / myTileCols) * myTileSize;
+        int colStart = (tile % myTileCols) * myTileSize;
+        for (int i = rowStart; i < Math.min(rowStart + myTileSize, myRows); i++) {
+            for (int j = colStart; j < Math.min(colStart + myTileSize, myCols); j++) {
+                action.accept(myCells[i * myCols + j]);
+            }
+        }
+    }
+
+    private void wakeAround(int tileRow, int tileCol) {
+        for (int r = tileRow - 1; r <= tileRow + 1; r++) {
+            for (int c = tileCol - 1; c <= tileCol + 1; c++) {
+                if (wrapTiles) {
+                    myActiveTiles[Math.floorMod(r, myTileRows) * myTileCols + Math.floorMod(c, myTileCols)] = true;
+                }
+                else if (r >= 0 && r < myTileRows && c >= 0 && c < myTileCols) {
+                    myActiveTiles[r * myTileCols + c] = true;
+                }
+            }
+        }
+    }
+
+    private int tileOf(int index) {
+        return (index / myCols / myTileSize) * myTileCols + (index % myCols) / myTileSize;
+    }
+
+    /**
+     * Returns the number of tiles the grid is split into, or 0 if tiles are not used
+     * @return number of tiles
+     */
+    public int getTileCount() {
+        return myActiveTiles == null ? 0 : myActiveTiles.length;
+    }
+
+    /**
+     * Returns the number of tiles that will be updated next generation
+     * @return number of awake tiles
+     */
+    public int getActiveTileCount() {
+        return myActiveTileCount;
+    }
+
+    /**
+     * Returns the fraction of the grid that will be updated next generation
+     * @return awake tiles over all tiles, 1 if tiles are not used
+     */
+    public double getActiveTileFraction() {
+        return myActiveTiles == null ? 1 : myActiveTileCount / (double) myActiveTiles.length;
+    }
+
+    /**
+     * Returns how much smaller the engine's storage is than one byte per cell, see Engine.getCompressionRatio()
+     * @return the compression ratio, 1 if there is no engine
+     */
+    public double getCompressionRatio() {
+        return myEngine == null ? 1 : myEngine.getCompressionRatio();
+    }
+
+    /**
+     * Gives what the engine worked out about the grid, see Engine.getFinding()
+     * @return a short description, or null if there is no engine or nothing to add
+     */
+    public String getEngineFinding() {
+        return myEngine == null ? null : myEngine.getFinding();
+    }
+
+    private void showChanges(ChangeLog changes) {
+        Topology topology = myEngine.getTopology();
+        for (int k = 0; k < changes.size(); k++) {
+            Cell cell = myCells[topology.toLogical(changes.getIndex(k))];
+            cell.setNextState(changes.getTo(k));
+            cell.updateState();
+            cell.updateDisplay();
+            myHash.set(cell.getIndex(), changes.getTo(k));
+        }
+    }
+
+    /**
+     * Returns the Zobrist hash of the current state of the grid, kept up to date as cells change
+     * @return 64 bit hash of every cell state
+     */
+    public long getStateHash() {
+        return myHash.getHash();
+    }
+
+    /**
+     * Tells whether the rules of the grid never use random numbers, so a repeated generation means a real cycle
+     * @return true if the cells are deterministic, see Cell.isDeterministic()
+     */
+    public boolean isDeterministic() {
+        return myGrid[0][0].getCell().isDeterministic();
+    }
+
+    private void proposeAndCommit() {
+        myVacancies = getEmptyCells();
+        myArbiter.nextGeneration();
+
+        // every cell proposes a move based on the current states only
+        IntStream.range(0, myCells.length).parallel().forEach(k -> {
+            Cell target = myCells[k].proposeMove();
+            if (target != null) {
+                myArbiter.propose(k, target.getIndex());
+            }
+        });
+
+        // winners move, everyone else that was not moved into or out of stays put
+        IntStream.range(0, myCells.length).parallel().forEach(k -> {
+            if (myArbiter.isWinner(k)) {
+                myCells[k].commitMove(myCells[myArbiter.getTarget(k)]);
+            }
+            else if (!myArbiter.isTaken(k)) {
+                myCells[k].commitMove(null);
+            }
+        });
+    }
+
+    private void relocateBatch() {
+        // one pass to find who wants to leave and where they can go
+        int[] movers = IntStream.range(0, myCells.length).parallel().filter(k -> myCells[k].needsRelocation()).toArray();
+        int[] vacancies = IntStream.range(0, myCells.length).parallel()
+                .filter(k -> myCells[k].getState() == EMPTY).toArray();
+
+        // random pairing of movers and vacancies, cells freed this generation are not reused
+        int moves = Math.min(movers.length, vacancies.length);
+        shuffle(movers, moves);
+        shuffle(vacancies, moves);
+        for (int k = 0; k < moves; k++) {
+            myCells[movers[k]].commitMove(myCells[vacancies[k]]);
+        }
+    }
+
+    private void shuffle(int[] indices, int count) {
+        // partial Fisher-Yates, the first count entries end up a uniform random sample in random order
+        for (int i = 0; i < count; i++) {
+            int j = i + myRandom.nextInt(indices.length - i);
+            int temp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = temp;
+        }
+    }
+
     /**
      * Gets the coordinates of a cell within the grid
      * @param cell
@@ -31,6 +31,7 @@ public class CellSpace extends Pane {
         myCell.setNextState((myCell.getState() + 1) % myCell.getLenColors());
         myCell.updateState();
         myCell.updateDisplay();
+        myGrid.cellEdited(myCell);
     }
 
 
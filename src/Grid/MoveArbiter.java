@@ -0,0 +1,114 @@
+package Grid;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The MoveArbiter class resolves collisions between agents that want to move at the same time. Instead of letting
+ * cells claim each other one at a time through isChanged, every agent first proposes a move from its own cell to a
+ * target cell, and the arbiter then decides which proposals may be committed. Each proposal claims both the source
+ * and the target cell in a shared claim array using compare-and-set, and the proposal with the highest priority keeps
+ * the claim. An agent only wins if it holds both of its claims, so no cell is ever written by two committed moves.
+ *
+ * Priorities are a hash of the agent's index and the current generation, so the outcome does not depend on which
+ * thread proposed first and the same agent doesn't win every collision it is part of.
+ */
+public class MoveArbiter {
+    private static final int UNCLAIMED = -1;
+
+    private AtomicIntegerArray myClaims;
+    private int[] myTargets;
+    private long myGeneration;
+
+    /**
+     * Creates an arbiter for a grid with the given number of cells
+     * @param size total number of cells, each cell is identified by an index in [0, size)
+     */
+    public MoveArbiter(int size) {
+        myClaims = new AtomicIntegerArray(size);
+        myTargets = new int[size];
+        myGeneration = 0;
+        clear();
+    }
+
+    /**
+     * Forgets all proposals so the arbiter can be used for the next generation
+     */
+    public void nextGeneration() {
+        myGeneration++;
+        clear();
+    }
+
+    /**
+     * Proposes moving the agent in the source cell into the target cell. Safe to call from several threads at once.
+     * @param source index of the cell the agent lives in, also used as the agent's id
+     * @param target index of the cell the agent would like to move to or act on
+     */
+    public void propose(int source, int target) {
+        myTargets[source] = target;
+        claim(source, source);
+        if (target != source) {
+            claim(target, source);
+        }
+    }
+
+    /**
+     * Tells whether the proposal made by the agent in the source cell survived arbitration. Only meaningful once every
+     * proposal of the generation has been made.
+     * @param source index of the proposing cell
+     * @return true if the agent holds the claims on both its own cell and its target
+     */
+    public boolean isWinner(int source) {
+        int target = myTargets[source];
+        return target != UNCLAIMED && myClaims.get(source) == source && myClaims.get(target) == source;
+    }
+
+    /**
+     * Tells whether a cell will be written by a committed move this generation
+     * @param cell index of the cell
+     * @return true if the cell is the source or the target of a winning proposal
+     */
+    public boolean isTaken(int cell) {
+        int owner = myClaims.get(cell);
+        return owner != UNCLAIMED && isWinner(owner);
+    }
+
+    /**
+     * Returns where the agent in the given cell proposed to go
+     * @param source index of the proposing cell
+     * @return index of the target cell, or -1 if the agent made no proposal
+     */
+    public int getTarget(int source) {
+        return myTargets[source];
+    }
+
+    private void claim(int cell, int agent) {
+        int current = myClaims.get(cell);
+        while (current == UNCLAIMED || outranks(agent, current)) {
+            if (myClaims.compareAndSet(cell, current, agent)) {
+                return;
+            }
+            current = myClaims.get(cell);
+        }
+    }
+
+    private boolean outranks(int agent, int other) {
+        int p1 = priority(agent);
+        int p2 = priority(other);
+        return p1 < p2 || (p1 == p2 && agent < other);
+    }
+
+    private int priority(int agent) {
+        long z = agent * 0x9E3779B97F4A7C15L + myGeneration;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (z ^ (z >>> 31));
+    }
+
+    private void clear() {
+        Arrays.fill(myTargets, UNCLAIMED);
+        for (int i = 0; i < myClaims.length(); i++) {
+            myClaims.set(i, UNCLAIMED);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package Grid;
+
+/**
+ * The ZobristHash class keeps a 64 bit hash of the state of every cell in the grid. Each (cell, state) pair is given
+ * a random key, and the hash is the XOR of the keys of the current state of every cell. The keys are not stored but
+ * mixed from the seed, the cell and the state with the SplitMix64 finalizer whenever they are needed, so the hash
+ * costs no more than the copy of the states it keeps to know which key to XOR out. When a cell changes state
+ * its old key is XORed out and its new key XORed in, so keeping the hash up to date costs one operation per
+ * transition instead of a pass over the grid. Two grids in the same state always have the same hash, and two grids in
+ * different states have the same hash with probability about 2^-64.
+ *
+ * Only the cell states are hashed, so hidden values such as the energy of a PredatorPrey animal are not part of it.
+ */
+public class ZobristHash {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private int[] myStates;
+    private int myStateCount;
+    private long mySeed;
+    private long myHash;
+
+    /**
+     * Creates the hash of a grid
+     * @param size number of cells
+     * @param stateCount number of states a cell can be in
+     * @param seed seed of the random keys, grids only share hashes if they share a seed
+     */
+    public ZobristHash(int size, int stateCount, long seed) {
+        myStateCount = stateCount;
+        myStates = new int[size];
+        mySeed = seed;
+    }
+
+    private long key(int index, int state) {
+        // a long product, so grids of more than 2^31 / stateCount cells get keys of their own too
+        long z = mySeed + ((long) index * myStateCount + state + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Hashes a whole grid from scratch
+     * @param states row by row array of cell states
+     */
+    public void load(int[] states) {
+        myHash = 0;
+        for (int k = 0; k < states.length; k++) {
+            myStates[k] = states[k];
+            myHash ^= key(k, states[k]);
+        }
+    }
+
+    /**
+     * Moves a cell to a new state, nothing happens if it was already in that state
+     * @param index index of the cell
+     * @param state its new state
+     */
+    public void set(int index, int state) {
+        if (myStates[index] == state) {
+            return;
+        }
+        myHash ^= key(index, myStates[index]) ^ key(index, state);
+        myStates[index] = state;
+    }
+
+    public long getHash() {
+        return myHash;
+    }
+}
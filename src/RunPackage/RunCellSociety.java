@@ -5,6 +5,7 @@ import SimulationPackage.Simulation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import javafx.util.Duration;
@@ -90,6 +91,10 @@ public class RunCellSociety extends Application {
         try {
             Simulation newSim = new Simulation(simFile, fromSaved);
             myUI.placeCells(newSim, isDuel);
+            Simulation oldSim = mySimulations[isDuel ? 1 : 0];
+            if (oldSim != null) {
+                oldSim.close();
+            }
             if (isDuel) {
                 mySimulations[1] = newSim;
             }
@@ -150,7 +155,13 @@ public class RunCellSociety extends Application {
                 myPlot.addData(myStepCount, mySimulations[0]);
             }
             else{
-                mySimulations[i].update();
+                try {
+                    mySimulations[i].update();
+                }
+                catch (SimulationException e) {
+                    // alerts can't wait inside an animation frame, so it is shown once the frame is done
+                    Platform.runLater(() -> showErrorMessage(e));
+                }
             }
         }
     }
@@ -43,6 +43,8 @@ public class StatePlot extends Pane {
     public static final String CHART_STYLE = "chart";
 
     private XYChart.Series[] mySeriesArray;
+    private LineChart<Number, Number> myChart;
+    private String myTitle;
 
     /**
      * Creates an instance of the StatePlot class and adds a formatted plot to it corresponding to a specific simulation
@@ -54,7 +56,9 @@ public class StatePlot extends Pane {
         super();
         NumberAxis[] axis = makeAxis(displayedStrings);
         LineChart<Number, Number> plotOfStates = new LineChart<>(axis[0], axis[1]);
-        plotOfStates.setTitle(displayedStrings.getString(PLOT_TITLE_STRING));
+        myChart = plotOfStates;
+        myTitle = displayedStrings.getString(PLOT_TITLE_STRING);
+        plotOfStates.setTitle(myTitle);
         String myColors = getColors(mySim);
         plotOfStates.getStyleClass().add(CHART_STYLE);
         plotOfStates.setStyle(myColors);
@@ -88,7 +92,8 @@ public class StatePlot extends Pane {
     }
 
     /**
-     * Adds cell state counts to the plot in relation to the step number
+     * Adds cell state counts to the plot in relation to the step number, and shows the status of the simulation in
+     * the title
      * @param step - number of times cell states have been updated
      * @param mySim - specific simulation to plot the states of
      */
@@ -99,6 +104,7 @@ public class StatePlot extends Pane {
             mySeriesArray[iter].getData().add(new XYChart.Data(step, mySim.getMap().get(s)));
             iter++;
         }
+        myChart.setTitle(myTitle + " (" + mySim.getStatus() + ")");
     }
 
     private String getColors(Simulation mySim){
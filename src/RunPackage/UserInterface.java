@@ -2,6 +2,8 @@ package RunPackage;
 
 import Exceptions.SimulationException;
 import SimulationPackage.Simulation;
+import XMLPackage.SaveListener;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
@@ -17,8 +19,6 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Slider;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 
 /**
  * Project 2: Cell Society
@@ -62,6 +62,7 @@ public class UserInterface{
     public static final String INFO_TEXT_String = "InfoString";
     public static final String TITLE_STRING = "TitleText";
     public static final String SAVE_BUTTON_STRING = "SaveButton";
+    public static final String SAVING_BUTTON_STRING = "SavingButton";
     public static final String MULTISIMULATION_STRING = "DuelSimulationButton";
     public static final int CONTROL_IMAGE_SIZE = 40;
     public static final double INITIAL_SLIDER_VALUE = 0.5;
@@ -73,6 +74,7 @@ public class UserInterface{
     private Scene myScene;
     private Slider mySlider;
     private Button myPlayPauseButton;
+    private Button mySaveButton;
     private ResourceBundle myStrings;
     private boolean paused;
     private StackPane myLeftSimulationSpace;
@@ -221,7 +223,7 @@ public class UserInterface{
         image = new Image(this.getClass().getClassLoader().getResourceAsStream(STEP_BUTTON_IMAGE));
         stepButton.setGraphic(makeCorrectSize(image, CONTROL_IMAGE_SIZE));
         box.getChildren().add(stepButton);
-        var saveButton = makeButton(new EventHandler<ActionEvent>() {
+        mySaveButton = makeButton(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
                 try {
@@ -231,9 +233,9 @@ public class UserInterface{
                 }
             }
         });
-        saveButton.setText(myStrings.getString(SAVE_BUTTON_STRING));
-        saveButton.getStyleClass().add(SIMULATION_BUTTON_STYLE);
-        box.getChildren().add(saveButton);
+        mySaveButton.setText(myStrings.getString(SAVE_BUTTON_STRING));
+        mySaveButton.getStyleClass().add(SIMULATION_BUTTON_STYLE);
+        box.getChildren().add(mySaveButton);
     }
 
     /**
@@ -300,19 +302,49 @@ public class UserInterface{
         setSliderValue(0);
     }
 
-    private void saveState() throws TransformerException, ParserConfigurationException {
-        stopSimulation();
-        myRun.stop();
+    private void saveState() {
         saveCurrentGrid();
     }
 
-    private void saveCurrentGrid() throws TransformerException, ParserConfigurationException {
+    /**
+     * Takes a snapshot of each running simulation between two steps and saves it in the background, so the
+     * simulations keep running while the file is written. The save button shows the progress.
+     */
+    private void saveCurrentGrid() {
         Simulation[] currSims = this.myRun.getSimulations();
+        if (currSims[0] == null) {
+            throw new SimulationException("No Simulation Running");
+        }
         for (Simulation sim : currSims) {
-            sim.getWriter().saveAsXML(sim.getSimName(), sim.getMyCellGrid().getGrid(),sim.getSimData().getGameConfig(), sim.getSimData().getCellConfig(), sim.getSimData().getParameters());
+            if (sim != null) {
+                sim.getWriter().saveInBackground(sim.snapshot(), makeSaveListener());
+            }
         }
     }
 
+    private SaveListener makeSaveListener() {
+        return new SaveListener() {
+            @Override
+            public void progress(double fraction) {
+                Platform.runLater(() -> mySaveButton.setText(
+                        String.format(myStrings.getString(SAVING_BUTTON_STRING), (int) (fraction * 100))));
+            }
+
+            @Override
+            public void saved(String fileName) {
+                Platform.runLater(() -> mySaveButton.setText(myStrings.getString(SAVE_BUTTON_STRING)));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                Platform.runLater(() -> {
+                    mySaveButton.setText(myStrings.getString(SAVE_BUTTON_STRING));
+                    myRun.showErrorMessage(new SimulationException("Could not save simulation: " + e.getMessage()));
+                });
+            }
+        };
+    }
+
     /**
      * Adds simulation cells with initial states to the User Interface
      * @param newSim - new simulation to be run in simulation space of window
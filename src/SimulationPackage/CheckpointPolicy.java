@@ -0,0 +1,247 @@
+package SimulationPackage;
+
+import EnginePackage.Checkpoint;
+import Exceptions.ConfigurationException;
+import XMLPackage.SimulationData;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * The CheckpointPolicy class decides when a long run writes a Checkpoint by itself, so that a run that dies can be
+ * resumed from close to where it stopped. It is set up in the parameters of the XML file:
+ *
+ * <checkpointEvery> writes one every that many generations and <checkpointSeconds> one every that many seconds, 0
+ * (the default) turning either off. Checkpoints go to <checkpointDirectory> (checkpoints/ by default) as the name of
+ * the XML file followed by the generation, and only the newest <checkpointKeep> (3 by default) are kept.
+ *
+ * The simulation fills the checkpoint between two steps, copying the planes of the engine, and a background thread
+ * writes it, first to a temporary file that is forced to the disk and then renamed over the final name, so a crash in
+ * the middle of a write never leaves a broken checkpoint behind. While one is being written no new one is started.
+ */
+public class CheckpointPolicy {
+    public static final String EVERY = "checkpointEvery";
+    public static final String SECONDS = "checkpointSeconds";
+    public static final String DIRECTORY = "checkpointDirectory";
+    public static final String KEEP = "checkpointKeep";
+    public static final String DEFLATE = "checkpointDeflate";
+
+    private static final String DEFAULT_DIRECTORY = "checkpoints/";
+    private static final String DEFAULT_KEEP = "3";
+    private static final String EXTENSION = ".ckpt";
+    private static final String TEMPORARY = ".tmp";
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "CheckpointPolicy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int myEvery;
+    private long myInterval;
+    private Path myDirectory;
+    private int myKeep;
+    private boolean myDeflate;
+    private String myPrefix;
+    private int myLastGeneration;
+    private long myLastTime;
+    private Future<?> myPending;
+    private AtomicReference<Exception> myLastError = new AtomicReference<>();
+
+    /**
+     * Reads the policy from the parameters of a simulation
+     * @param data parsed XML file
+     * @param fileName name of the XML file, which the checkpoints are named after
+     * @throws ConfigurationException if a parameter is not a valid number
+     */
+    public CheckpointPolicy(SimulationData data, String fileName) {
+        try {
+            myEvery = Integer.parseInt(data.getOptionalParameter(EVERY, "0"));
+            myInterval = (long) (Double.parseDouble(data.getOptionalParameter(SECONDS, "0")) * NANOS_PER_SECOND);
+            myKeep = Integer.parseInt(data.getOptionalParameter(KEEP, DEFAULT_KEEP));
+        }
+        catch (NumberFormatException e) {
+            throw new ConfigurationException("Invalid checkpoint policy.");
+        }
+        if (myEvery < 0 || myInterval < 0 || myKeep < 1) {
+            throw new ConfigurationException("Invalid checkpoint policy.");
+        }
+        myDirectory = Path.of(data.getOptionalParameter(DIRECTORY, DEFAULT_DIRECTORY));
+        myDeflate = Boolean.parseBoolean(data.getOptionalParameter(DEFLATE, "false"));
+        myPrefix = Path.of(fileName).getFileName().toString().replaceFirst("\\.xml$", "") + "-";
+        reset(0);
+    }
+
+    /**
+     * Tells whether checkpoints are written at all
+     * @return true if checkpointEvery or checkpointSeconds is set
+     */
+    public boolean isEnabled() {
+        return myEvery > 0 || myInterval > 0;
+    }
+
+    /**
+     * Starts counting generations and seconds again, after a checkpoint is written or restored
+     * @param generation generation the simulation is at
+     */
+    public void reset(int generation) {
+        myLastGeneration = generation;
+        myLastTime = System.nanoTime();
+    }
+
+    /**
+     * Tells whether a checkpoint should be written now
+     * @param generation generation the simulation is at
+     * @return true if enough generations or seconds went by and the last checkpoint is written
+     */
+    public boolean isDue(int generation) {
+        if (!isEnabled() || (myPending != null && !myPending.isDone()) || generation == myLastGeneration) {
+            return false;
+        }
+        return (myEvery > 0 && generation - myLastGeneration >= myEvery)
+                || (myInterval > 0 && System.nanoTime() - myLastTime >= myInterval);
+    }
+
+    /**
+     * Writes a filled checkpoint in the background, then deletes the ones beyond checkpointKeep
+     * @param checkpoint checkpoint that no longer changes
+     * @return Future that is done once the file is in place
+     */
+    public Future<?> write(Checkpoint checkpoint) {
+        reset((int) checkpoint.getGeneration());
+        Path target = myDirectory.resolve(String.format("%s%010d%s", myPrefix, checkpoint.getGeneration(), EXTENSION));
+        myPending = WRITER.submit(() -> {
+            try {
+                Files.createDirectories(myDirectory);
+                Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY);
+                checkpoint.write(temporary, myDeflate);
+                moveAtomically(temporary, target);
+                prune();
+            }
+            catch (IOException | RuntimeException e) {
+                myLastError.set(e);
+            }
+        });
+        return myPending;
+    }
+
+    /**
+     * Waits until the checkpoint being written in the background, if any, is in place. The planes it reads are reused
+     * for the next checkpoint and closed with the engine, so anything else that touches them waits for it first.
+     */
+    public void await() {
+        if (myPending == null) {
+            return;
+        }
+        try {
+            myPending.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // write() keeps its own errors, so there is nothing to report here
+        }
+    }
+
+    private void moveAtomically(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> checkpoints = list();
+        for (int k = myKeep; k < checkpoints.size(); k++) {
+            Files.deleteIfExists(checkpoints.get(k));
+        }
+        // only this thread writes, so any temporary file left is from a run that died while writing
+        try (Stream<Path> files = Files.list(myDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(myPrefix) && name.endsWith(TEMPORARY)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the checkpoints of this simulation, the highest generation first
+     * @return paths of the checkpoints, empty if there are none
+     * @throws IOException if the directory can't be read
+     */
+    public List<Path> list() throws IOException {
+        var checkpoints = new ArrayList<Path>();
+        if (!Files.isDirectory(myDirectory)) {
+            return checkpoints;
+        }
+        try (Stream<Path> files = Files.list(myDirectory)) {
+            files.filter(this::isCheckpoint).forEach(checkpoints::add);
+        }
+        checkpoints.sort(Comparator.comparingLong(this::generationOf).reversed());
+        return checkpoints;
+    }
+
+    /**
+     * Restores the newest checkpoint of this simulation that can be restored. A checkpoint that can't be read or
+     * belongs to another configuration is skipped for the one before it.
+     * @param restorer restores one checkpoint file
+     * @return true if a checkpoint was restored, false if there was none to restore
+     * @throws IOException if the checkpoint directory can't be read
+     * @throws ConfigurationException if there are checkpoints but none of them could be restored
+     */
+    public boolean resumeLatest(CheckpointRestorer restorer) throws IOException {
+        List<Path> checkpoints = list();
+        String reason = "";
+        for (Path checkpoint : checkpoints) {
+            try {
+                restorer.restore(checkpoint);
+                return true;
+            }
+            catch (ConfigurationException | IOException e) {
+                // try the one before
+                reason = e.getMessage();
+            }
+        }
+        if (!checkpoints.isEmpty()) {
+            throw new ConfigurationException("None of the " + checkpoints.size() + " checkpoints could be resumed: "
+                    + reason);
+        }
+        return false;
+    }
+
+    private boolean isCheckpoint(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(myPrefix) && name.endsWith(EXTENSION)
+                && name.substring(myPrefix.length(), name.length() - EXTENSION.length()).matches("\\d+");
+    }
+
+    private long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(myPrefix.length(), name.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Gives the error of the last background write that failed, once, so each failure is reported a single time
+     * @return the exception, or null if no write failed since the last call
+     */
+    public Exception takeError() {
+        return myLastError.getAndSet(null);
+    }
+}
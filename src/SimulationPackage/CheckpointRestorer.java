@@ -0,0 +1,21 @@
+package SimulationPackage;
+
+import Exceptions.ConfigurationException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A CheckpointRestorer puts whatever runs a simulation, a Simulation or an EngineRun, back in the state saved in a
+ * checkpoint file, so that CheckpointPolicy.resumeLatest() can try the checkpoints one after the other.
+ */
+public interface CheckpointRestorer {
+
+    /**
+     * Continues from a checkpoint
+     * @param checkpoint file to read
+     * @throws IOException if the file can't be read
+     * @throws ConfigurationException if the checkpoint is invalid or of another simulation
+     */
+    void restore(Path checkpoint) throws IOException;
+}
@@ -0,0 +1,78 @@
+package SimulationPackage;
+
+/**
+ * The CycleDetector class remembers the grid hashes of the last few generations and recognizes when a simulation has
+ * stopped going anywhere. If the newest hash equals the hash from k generations ago, the grid is back in a state it
+ * was already in, and since the rules only look at the current state it will keep repeating it: with k = 1 the grid
+ * is stable, otherwise it cycles with period k. This covers frozen grids, oscillators and a fully satisfied
+ * Segregation. For rules that use random numbers a repeat is not a guarantee, so it only means nothing changed for
+ * that stretch: a grid of them back where it was k > 1 generations ago usually moves on, so autoStop only stops
+ * them once they are stable, and stops on any period only for deterministic rules such as GameOfLife.
+ */
+public class CycleDetector {
+    public static final String RUNNING = "running";
+    public static final String STABLE = "stable";
+    public static final String PERIOD = "period-";
+
+    private long[] myHistory;
+    private int myCount;
+    private int myPeriod;
+
+    /**
+     * Creates a detector
+     * @param historyLength longest period that can be recognized
+     */
+    public CycleDetector(int historyLength) {
+        myHistory = new long[historyLength];
+    }
+
+    /**
+     * Adds the hash of a new generation and checks it against the history
+     * @param hash hash of the grid after the generation
+     * @return the period found, 0 if the grid is not repeating
+     */
+    public int record(long hash) {
+        myPeriod = 0;
+        int depth = Math.min(myCount, myHistory.length);
+        for (int k = 1; k <= depth; k++) {
+            if (myHistory[(myCount - k) % myHistory.length] == hash) {
+                myPeriod = k;
+                break;
+            }
+        }
+        myHistory[myCount % myHistory.length] = hash;
+        myCount++;
+        return myPeriod;
+    }
+
+    /**
+     * Forgets the history, used when the grid was changed from outside the rules
+     */
+    public void reset() {
+        myCount = 0;
+        myPeriod = 0;
+    }
+
+    /**
+     * Returns the hash of the newest generation
+     * @return last recorded hash
+     */
+    public long getLastHash() {
+        return myHistory[(myCount - 1) % myHistory.length];
+    }
+
+    public int getPeriod() {
+        return myPeriod;
+    }
+
+    /**
+     * Describes what the simulation is doing
+     * @return "running", "stable" or "period-k"
+     */
+    public String getStatus() {
+        if (myPeriod == 0) {
+            return RUNNING;
+        }
+        return myPeriod == 1 ? STABLE : PERIOD + myPeriod;
+    }
+}
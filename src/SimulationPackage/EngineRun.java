@@ -0,0 +1,191 @@
+package SimulationPackage;
+
+import EnginePackage.Checkpoint;
+import EnginePackage.Engine;
+import EnginePackage.EngineManager;
+import EnginePackage.StatePlane;
+import EnginePackage.Topology;
+import Exceptions.ConfigurationException;
+import Exceptions.SimulationException;
+import XMLPackage.SimulationData;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * The EngineRun class runs a simulation on its engine alone, without the user interface. A Simulation builds a Cell,
+ * a CellSpace and a JavaFX shape for every cell and hashes the grid to find cycles, all of it on the heap, so it can
+ * only hold grids of a few million cells whatever the storage of the engine. Here the engine's StatePlanes are the
+ * whole grid, so with offHeap or mapped storage a Fire or Percolation grid many times larger than -Xmx can be run,
+ * e.g. a long batch run that only needs its checkpoints. The heap still holds what an engine keeps per active cell,
+ * such as the frontier of Fire or Percolation, and engines that keep their cells in arrays still need it for them.
+ *
+ * Random initial states are drawn from the seed, so a file with a seed parameter always starts from the same grid.
+ * With storage other than heap they are set one cell at a time and never copied onto the heap. The CheckpointPolicy
+ * of the XML file applies as in a Simulation, including checkpointResume.
+ *
+ * Run it with the file name, the number of generations and optionally "saved" to start from the states saved in the
+ * file, e.g. "huge_Percolation.xml 1000".
+ */
+public class EngineRun implements AutoCloseable {
+    private static final String CHECKPOINT_RESUME = "checkpointResume";
+    private static final String FROM_SAVED = "saved";
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final long BYTES_PER_MEGABYTE = 1 << 20;
+
+    private SimulationData myData;
+    private Engine myEngine;
+    private CheckpointPolicy myCheckpoints;
+
+    /**
+     * Creates the engine of a simulation and fills it with the initial states
+     * @param filename name of the XML file
+     * @param fromSaved whether to start from the states saved in the file instead of random ones
+     * @throws ClassNotFoundException
+     * @throws NoSuchMethodException
+     * @throws InvocationTargetException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws IOException
+     * @throws XMLStreamException
+     * @throws ConfigurationException if the file doesn't ask for an engine or its parameters are invalid
+     */
+    public EngineRun(String filename, boolean fromSaved) throws ClassNotFoundException,
+            NoSuchMethodException,
+            InvocationTargetException,
+            InstantiationException,
+            IllegalAccessException,
+            IOException, XMLStreamException,
+            ConfigurationException {
+        myData = new SimulationData(filename);
+        var em = new EngineManager();
+        if (!em.usesEngine(myData)) {
+            throw new ConfigurationException("Runs without cells need an engine.");
+        }
+        myEngine = em.createEngine(myData.getName(), myData);
+        // nothing is redrawn, so the transitions of a generation are not kept
+        myEngine.getChanges().setEnabled(false);
+        loadInitialStates(fromSaved);
+        myCheckpoints = new CheckpointPolicy(myData, filename);
+        // with no checkpoint to resume yet the run simply starts from generation 0
+        if (Boolean.parseBoolean(myData.getOptionalParameter(CHECKPOINT_RESUME, "false"))) {
+            myCheckpoints.resumeLatest(checkpoint -> restoreCheckpoint(checkpoint.toString()));
+        }
+    }
+
+    private void loadInitialStates(boolean fromSaved) {
+        Topology topology = myEngine.getTopology();
+        if (fromSaved) {
+            int[] states = myData.getInitialStates();
+            if (states == null || states.length != topology.size()) {
+                throw new ConfigurationException("XML dimension mismatch!");
+            }
+            myEngine.load(topology.toStorage(states));
+            return;
+        }
+        var random = new SplittableRandom(myEngine.getSeed()).split();
+        if (myData.getOptionalParameter(StatePlane.STORAGE, StatePlane.HEAP).equals(StatePlane.HEAP)) {
+            var states = new int[topology.size()];
+            for (int k = 0; k < states.length; k++) {
+                states[k] = myData.getInitialState(random);
+            }
+            myEngine.load(topology.toStorage(states));
+            return;
+        }
+        // only engines with StatePlanes take other storage, and they can start empty and be set cell by cell
+        for (int k = 0; k < topology.size(); k++) {
+            myEngine.setState(topology.toStorage(k), myData.getInitialState(random));
+        }
+    }
+
+    /**
+     * Advances the engine, writing checkpoints as the CheckpointPolicy asks
+     * @param generations number of generations to advance
+     * @throws SimulationException if a checkpoint written in the background failed
+     */
+    public void run(int generations) {
+        for (int g = 0; g < generations; g++) {
+            myEngine.step();
+            checkpointIfDue();
+        }
+    }
+
+    private void checkpointIfDue() {
+        Exception error = myCheckpoints.takeError();
+        if (error != null) {
+            throw new SimulationException("Could not write checkpoint: " + error.getMessage());
+        }
+        if (myCheckpoints.isDue(myEngine.getGeneration())) {
+            myCheckpoints.write(makeCheckpoint());
+        }
+    }
+
+    private Checkpoint makeCheckpoint() {
+        var checkpoint = new Checkpoint(myData.getConfigHash(), myEngine.getTopology().size());
+        myEngine.saveCheckpoint(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Writes a binary checkpoint of the engine, which a Simulation or an EngineRun of the same file can continue from
+     * @param path file to write
+     * @throws IOException if the file can't be written
+     */
+    public void saveCheckpoint(String path) throws IOException {
+        myCheckpoints.await();
+        makeCheckpoint().write(Path.of(path), Boolean.parseBoolean(myData.getOptionalParameter(CheckpointPolicy.DEFLATE,
+                "false")));
+    }
+
+    /**
+     * Continues from a checkpoint written for the same configuration
+     * @param path file to read
+     * @throws IOException if the file can't be read
+     * @throws ConfigurationException if the checkpoint is invalid or of another simulation
+     */
+    public void restoreCheckpoint(String path) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(Path.of(path));
+        if (checkpoint.getConfigHash() != myData.getConfigHash()) {
+            throw new ConfigurationException("Checkpoint doesn't match the simulation.");
+        }
+        myEngine.restoreCheckpoint(checkpoint);
+        myCheckpoints.reset(myEngine.getGeneration());
+    }
+
+    public Engine getEngine() {
+        return myEngine;
+    }
+
+    /**
+     * Waits for a checkpoint being written, then releases the engine's storage, such as the files of mapped planes
+     */
+    @Override
+    public void close() {
+        myCheckpoints.await();
+        myEngine.close();
+    }
+
+    /**
+     * Runs an XML file from the data directory for a number of generations and prints how long it took and how much
+     * memory the grid used
+     * @param args XML file name, number of generations, then optionally "saved"
+     * @throws Exception if the file can't be parsed or run
+     */
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        try (var run = new EngineRun(args[0], args.length > 2 && args[2].equals(FROM_SAVED))) {
+            run.run(Integer.parseInt(args[1]));
+            Engine engine = run.getEngine();
+            engine.flush();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("%s, %d cells: generation %d after %.1f s, %d MB in state planes, %d MB of %d MB heap%n",
+                    args[0], engine.getTopology().size(), engine.getGeneration(),
+                    (System.nanoTime() - start) / NANOS_PER_SECOND, engine.getFootprint() / BYTES_PER_MEGABYTE,
+                    (runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MEGABYTE,
+                    runtime.maxMemory() / BYTES_PER_MEGABYTE);
+        }
+    }
+}
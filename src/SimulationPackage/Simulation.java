@@ -2,18 +2,22 @@ package SimulationPackage;
 
 import CellPackage.Cell;
 import CellPackage.CellManager;
+import EnginePackage.Checkpoint;
+import EnginePackage.EngineManager;
 import Exceptions.ConfigurationException;
+import Exceptions.SimulationException;
 import Grid.CellGrid;
 import Grid.CellSpace;
+import XMLPackage.GridSnapshot;
 import XMLPackage.SimulationData;
 import XMLPackage.XMLWriter;
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 /**
@@ -24,8 +28,17 @@ import java.util.HashMap;
  * @author Feroze Mohideen
  */
 public class Simulation extends Group {
+    private static final String CYCLE_HISTORY = "cycleHistory";
+    private static final String AUTO_STOP = "autoStop";
+    private static final String DEFAULT_HISTORY = "16";
+    private static final String CHECKPOINT_RESUME = "checkpointResume";
+
     private CellGrid myCellGrid;
+    private CycleDetector myDetector;
+    private boolean autoStop;
+    private boolean stopped;
     private XMLWriter myWriter;
+    private CheckpointPolicy myCheckpoints;
     SimulationData myData;
     String simulationName;
     /**
@@ -40,8 +53,7 @@ public class Simulation extends Group {
      * @throws InstantiationException
      * @throws IllegalAccessException
      * @throws IOException
-     * @throws SAXException
-     * @throws ParserConfigurationException
+     * @throws XMLStreamException
      * @throws ConfigurationException
      */
     public Simulation(String filename, boolean fromSaved) throws ClassNotFoundException,
@@ -49,8 +61,7 @@ public class Simulation extends Group {
             InvocationTargetException,
             InstantiationException,
             IllegalAccessException,
-            IOException, SAXException,
-            ParserConfigurationException,
+            IOException, XMLStreamException,
             ConfigurationException {
 
         myData = new SimulationData(filename);
@@ -65,6 +76,20 @@ public class Simulation extends Group {
 
         myCellGrid.fillCells(cells);
 
+        var em = new EngineManager();
+        if (em.usesEngine(myData)) {
+            myCellGrid.attachEngine(em.createEngine(simulationName, myData, myCellGrid.getStates()));
+        }
+
+        myCheckpoints = new CheckpointPolicy(myData, filename);
+        if (myCheckpoints.isEnabled() && !em.usesEngine(myData)) {
+            throw new ConfigurationException("Checkpoints need an engine.");
+        }
+
+        myDetector = new CycleDetector(Integer.parseInt(myData.getOptionalParameter(CYCLE_HISTORY, DEFAULT_HISTORY)));
+        myDetector.record(myCellGrid.getStateHash());
+        autoStop = Boolean.parseBoolean(myData.getOptionalParameter(AUTO_STOP, "false"));
+
         // attach cell panes to society
         for (CellSpace[] cs1: myCellGrid.getGrid()) {
             for (CellSpace cs2: cs1) {
@@ -72,6 +97,11 @@ public class Simulation extends Group {
                 getChildren().add(cs2);
             }
         }
+
+        // with no checkpoint to resume yet the run simply starts from generation 0
+        if (Boolean.parseBoolean(myData.getOptionalParameter(CHECKPOINT_RESUME, "false"))) {
+            resumeLatestCheckpoint();
+        }
     }
     /**
      * Used by the Front-end to save to XML
@@ -80,6 +110,14 @@ public class Simulation extends Group {
     public XMLWriter getWriter() {
         return myWriter;
     }
+    /**
+     * Copies the states of the cells and the configuration so that they can be saved while the simulation keeps
+     * running. Called between two updates, the copy holds a single generation.
+     * @return snapshot for the XMLWriter
+     */
+    public GridSnapshot snapshot() {
+        return new GridSnapshot(simulationName, myCellGrid.getStates(), myData.getGameConfig(), myData.getCellConfig(), myData.getParameters());
+    }
     /**
      * Returns parsed information on the simulation
      * @return SimulationData object holding information on the sim
@@ -102,10 +140,118 @@ public class Simulation extends Group {
         return myCellGrid;
     }
     /**
-     * Method which the front-end calls on each iteration to change all cells
+     * Method which the front-end calls on each iteration to change all cells. When autoStop is set in the XML file
+     * nothing happens once the grid is stable, or cycling for rules without random numbers, until the user changes a
+     * cell.
+     * @throws SimulationException after the step if the last checkpoint written in the background failed
      */
     public void update() {
+        if (stopped) {
+            if (myCellGrid.getStateHash() == myDetector.getLastHash()) {
+                return;
+            }
+            stopped = false;
+            myDetector.reset();
+            myDetector.record(myCellGrid.getStateHash());
+        }
         myCellGrid.update();
+        int period = myDetector.record(myCellGrid.getStateHash());
+        // a random rule can leave the grid unchanged for a step and move on, but only a deterministic one must cycle
+        stopped = autoStop && (period == 1 || (period > 1 && myCellGrid.isDeterministic()));
+        checkpointIfDue();
+    }
+    /**
+     * Advances several generations without showing the ones in between, used to skip ahead quickly
+     * @param generations number of generations to advance
+     */
+    public void fastForward(int generations) {
+        myCellGrid.fastForward(generations);
+        // the skipped generations are not in the history, so repeats can only be found from here on
+        stopped = false;
+        myDetector.reset();
+        myDetector.record(myCellGrid.getStateHash());
+        checkpointIfDue();
+    }
+    /**
+     * Writes a binary checkpoint of the running engine, which restoreCheckpoint() continues from exactly. The layers
+     * are deflated when checkpointDeflate is set in the XML file.
+     * @param path file to write
+     * @throws IOException if the file can't be written
+     * @throws ConfigurationException if the simulation has no engine
+     */
+    public void saveCheckpoint(String path) throws IOException {
+        myCheckpoints.await();
+        Checkpoint checkpoint = makeCheckpoint();
+        checkpoint.write(Path.of(path), Boolean.parseBoolean(myData.getOptionalParameter(CheckpointPolicy.DEFLATE,
+                "false")));
+    }
+
+    private Checkpoint makeCheckpoint() {
+        var checkpoint = new Checkpoint(myData.getConfigHash(), (int) (myData.getRows() * myData.getCols()));
+        myCellGrid.saveCheckpoint(checkpoint);
+        return checkpoint;
+    }
+
+    private void checkpointIfDue() {
+        Exception error = myCheckpoints.takeError();
+        if (error != null) {
+            throw new SimulationException("Could not write checkpoint: " + error.getMessage());
+        }
+        if (myCheckpoints.isDue(myCellGrid.getGeneration())) {
+            myCheckpoints.write(makeCheckpoint());
+        }
+    }
+    /**
+     * Continues from a checkpoint written by saveCheckpoint() for the same configuration
+     * @param path file to read
+     * @throws IOException if the file can't be read
+     * @throws ConfigurationException if the checkpoint is invalid or of another simulation
+     */
+    public void restoreCheckpoint(String path) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(Path.of(path));
+        if (checkpoint.getConfigHash() != myData.getConfigHash()) {
+            throw new ConfigurationException("Checkpoint doesn't match the simulation.");
+        }
+        myCellGrid.restoreCheckpoint(checkpoint);
+        myCheckpoints.reset(myCellGrid.getGeneration());
+        // the restored generation has no history here, so repeats can only be found from here on
+        stopped = false;
+        myDetector.reset();
+        myDetector.record(myCellGrid.getStateHash());
+    }
+    /**
+     * Continues from the newest checkpoint the CheckpointPolicy wrote for this file, e.g. after a run died. The run
+     * goes on exactly as it would have from that generation. A checkpoint that can't be read or belongs to another
+     * configuration is skipped for the one before it.
+     * @return true if a checkpoint was restored, false if there was none to restore
+     * @throws IOException if the checkpoint directory can't be read
+     * @throws ConfigurationException if there are checkpoints but none of them could be restored
+     */
+    public boolean resumeLatestCheckpoint() throws IOException {
+        return myCheckpoints.resumeLatest(checkpoint -> restoreCheckpoint(checkpoint.toString()));
+    }
+    /**
+     * Releases what the simulation holds open, such as the files of mapped storage, once it is replaced
+     */
+    public void close() {
+        myCheckpoints.await();
+        myCellGrid.close();
+    }
+    /**
+     * Tells whether the grid has stopped changing or keeps repeating the same few states, followed by what the engine
+     * worked out about the grid if anything, such as whether a Percolation cluster spans it
+     * @return "running", "stable" or "period-k" where k is the length of the cycle, e.g. "stable, spans"
+     */
+    public String getStatus() {
+        String finding = myCellGrid.getEngineFinding();
+        return finding == null ? myDetector.getStatus() : myDetector.getStatus() + ", " + finding;
+    }
+    /**
+     * Tells whether the simulation was stopped by autoStop
+     * @return true if update() currently does nothing
+     */
+    public boolean isStopped() {
+        return stopped;
     }
     /**
      * These next 3 methods are used by the StateMap on the front-end; the generate diagnostic information about the
@@ -0,0 +1,55 @@
+package XMLPackage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A GridSnapshot is a copy of everything XMLWriter needs to save a simulation, taken between two generations. Once it
+ * is taken the simulation can keep running while the snapshot is written on another thread, and the file still holds
+ * a single generation instead of a mix of two.
+ */
+public class GridSnapshot {
+    private String myName;
+    private int[] myStates;
+    private Map<String, ArrayList<String>> myGameConfig;
+    private Map<String, ArrayList<Double>> myCellConfig;
+    private Map<String, ArrayList<String>> myParameters;
+
+    /**
+     * Takes a snapshot. The states belong to the snapshot from then on, the maps are copied.
+     * @param name name of the simulation
+     * @param states row by row states of the grid
+     * @param gameConfig map of game configuration
+     * @param cellConfig map of cell configuration
+     * @param parameters map of parameter configuration
+     */
+    public GridSnapshot(String name, int[] states, Map<String, ArrayList<String>> gameConfig,
+                        Map<String, ArrayList<Double>> cellConfig, Map<String, ArrayList<String>> parameters) {
+        myName = name;
+        myStates = states;
+        myGameConfig = new HashMap<>(gameConfig);
+        myCellConfig = new HashMap<>(cellConfig);
+        myParameters = new HashMap<>(parameters);
+    }
+
+    public String getName() {
+        return myName;
+    }
+
+    public int[] getStates() {
+        return myStates;
+    }
+
+    public Map<String, ArrayList<String>> getGameConfig() {
+        return myGameConfig;
+    }
+
+    public Map<String, ArrayList<Double>> getCellConfig() {
+        return myCellConfig;
+    }
+
+    public Map<String, ArrayList<String>> getParameters() {
+        return myParameters;
+    }
+}
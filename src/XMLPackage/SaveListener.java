@@ -0,0 +1,26 @@
+package XMLPackage;
+
+/**
+ * A SaveListener follows a save that XMLWriter runs in the background. Its methods are called on the thread doing
+ * the save, so a listener that changes the display has to pass the change on to the JavaFX thread.
+ */
+public interface SaveListener {
+
+    /**
+     * Called as the states of the cells are written
+     * @param fraction fraction of the cells written so far
+     */
+    void progress(double fraction);
+
+    /**
+     * Called once the file is complete
+     * @param fileName path of the saved file
+     */
+    void saved(String fileName);
+
+    /**
+     * Called instead of saved() if the file could not be written
+     * @param e what went wrong
+     */
+    void failed(Exception e);
+}
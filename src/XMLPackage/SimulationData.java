@@ -1,14 +1,18 @@
 package XMLPackage;
 
+import EnginePackage.LifeRule;
 import Exceptions.ConfigurationException;
 import javafx.scene.paint.Color;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 /**
  * This class grabs data from the Parser and has many public methods to extract data from it instead of accessing the
  * parsed data directly. In this way, it first of all offers a cleaner API for classes from the Configuration and
@@ -18,31 +22,45 @@ import java.util.Random;
  * @author Feroze Mohideen
  */
 public class SimulationData {
+    private static final String CHECKPOINT_PREFIX = "checkpoint";
+    private static final List<String> STORAGE_PARAMETERS = List.of("storage", "storageFile");
+
     private Map<String, ArrayList<String>> myGameConfig;
     private Map<String, ArrayList<Double>> myCellConfig;
 
     private Map<String, ArrayList<String>> myParameters;
+    private int[] myInitialStates;
+    private LifeRule myLifeRule;
     /**
      * A simulationdata object can be called to return information about the current simulation running
      * @param filename The XML file from which we would like to construct our Maps
-     * @throws ParserConfigurationException
-     * @throws SAXException
+     * @throws XMLStreamException
      * @throws IOException
      */
-    public SimulationData(String filename) throws ParserConfigurationException, SAXException, IOException {
+    public SimulationData(String filename) throws XMLStreamException, IOException {
         var parser = new XMLParser();
-            myGameConfig = parser.parseGame(filename);
-            myCellConfig = parser.parseCell(filename);
-            myParameters = parser.parseParameters(filename);
+        parser.parse(filename);
+        myGameConfig = parser.getGameConfig();
+        myCellConfig = parser.getCellConfig();
+        myParameters = parser.getParameters();
+        myInitialStates = parser.getInitialStates();
     }
     /**
      * Generates a state to assign a cell given the state probabilities
      * @return integer indexing the state of a cell
      */
     public int getInitialState() {
+        return getInitialState(new Random());
+    }
+    /**
+     * Generates a state to assign a cell given the state probabilities, drawing from the given generator
+     * @param random generator to draw from, e.g. a seeded one for a reproducible grid
+     * @return integer indexing the state of a cell
+     */
+    public int getInitialState(RandomGenerator random) {
         ArrayList<Double> input = myCellConfig.get("stateProb");
         int count = 0;
-        double prob = new Random().nextDouble();
+        double prob = random.nextDouble();
         for (Double d: input) {
             if (prob < d) {
                 return count;
@@ -138,23 +156,64 @@ public class SimulationData {
     public String getNeighborType() {
         return myGameConfig.get("neighbors").get(0);
     }
+    /**
+     * Gives the Life-like rule in the parameters, B3/S23 if there is none. It is compiled on first use and shared by
+     * every GameOfLifeCell and the engine.
+     * @return the compiled rule
+     * @throws ConfigurationException if the rule can't be read
+     */
+    public LifeRule getLifeRule() {
+        if (myLifeRule == null) {
+            myLifeRule = new LifeRule(getOptionalParameter(LifeRule.RULE, LifeRule.GAME_OF_LIFE));
+        }
+        return myLifeRule;
+    }
 
     public ArrayList<String> getParameter(String param) {
         return myParameters.get(param);
     }
+    /**
+     * Returns the first value of a parameter that does not have to be present in the XML file
+     * @param param name of the parameter tag
+     * @param defaultValue value to use when the tag is missing
+     * @return the parameter value or the default
+     */
+    public String getOptionalParameter(String param, String defaultValue) {
+        if (myParameters.get(param) == null || myParameters.get(param).isEmpty()) {
+            return defaultValue;
+        }
+        return myParameters.get(param).get(0);
+    }
 
-    public Map getGameConfig(){
+    public Map<String, ArrayList<String>> getGameConfig(){
         return myGameConfig;
     }
-    public Map getCellConfig(){
+    public Map<String, ArrayList<Double>> getCellConfig(){
         return myCellConfig;
     }
-    public Map getParameters(){
+    public Map<String, ArrayList<String>> getParameters(){
         return myParameters;
     }
 
-    public ArrayList<String> getStates() {
-        return myGameConfig.get("initialState");
+    /**
+     * Hashes the configuration, so that a checkpoint can tell whether it belongs to this simulation. The states saved
+     * in the file are left out, a checkpoint of a run started from a saved file fits the original file too. So are
+     * the checkpoint and storage parameters, which change how a run is kept but not what it computes, so that e.g.
+     * checkpointResume can be turned on after a run died.
+     * @return hash of the game, cell and parameter Maps
+     */
+    public int getConfigHash() {
+        var rules = new HashMap<>(myParameters);
+        rules.keySet().removeIf(name -> name.startsWith(CHECKPOINT_PREFIX) || STORAGE_PARAMETERS.contains(name));
+        return Objects.hash(myGameConfig, myCellConfig, rules);
+    }
+
+    /**
+     * Returns the states saved in the file
+     * @return row by row states of the grid, or null if the file doesn't have any
+     */
+    public int[] getInitialStates() {
+        return myInitialStates;
     }
 
     public double getGameWidth() {
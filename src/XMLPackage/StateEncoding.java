@@ -0,0 +1,259 @@
+package XMLPackage;
+
+import Exceptions.ConfigurationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class turns the states of a saved grid into a short block of text and back, so that a saved file doesn't need
+ * an element for every cell. There are two encodings, named by the encoding attribute of initialState:
+ *
+ * rle stores each run of cells in the same state as the state and the length of the run, which suits grids with large
+ * empty or uniform regions. bitpack stores the number of cells and the number of bits a state needs, then every state
+ * in that many bits, which suits noisy grids with few states.
+ *
+ * Numbers are written as unsigned varints, 7 bits per byte with the high bit set on every byte but the last, and the
+ * bytes are written in base64 split into lines. States are encoded one cell at a time straight into a stream, so
+ * saving a grid doesn't need a copy of it.
+ */
+public class StateEncoding {
+    public static final String ENCODING = "encoding";
+    public static final String RLE = "rle";
+    public static final String BITPACK = "bitpack";
+
+    private static final int LINE_LENGTH = 76;
+    private static final int PROGRESS_REPORTS = 100;
+    private static final byte[] LINE_SEPARATOR = "\n".getBytes(StandardCharsets.US_ASCII);
+
+    private StateEncoding() {
+    }
+
+    /**
+     * Picks the encoding that gives the fewer bytes, without encoding anything
+     * @param states state of each cell by its row by row index, none negative
+     * @param count number of cells
+     * @return rle or bitpack
+     */
+    public static String chooseEncoding(IntUnaryOperator states, int count) {
+        long runBytes = 0;
+        int max = 0;
+        int k = 0;
+        while (k < count) {
+            int state = states.applyAsInt(k);
+            int run = 1;
+            while (k + run < count && states.applyAsInt(k + run) == state) {
+                run++;
+            }
+            runBytes += varintSize(state) + varintSize(run);
+            max = Math.max(max, state);
+            k += run;
+        }
+        long bitBytes = varintSize(count) + 1 + ((long) count * bitsFor(max) + Byte.SIZE - 1) / Byte.SIZE;
+        return runBytes <= bitBytes ? RLE : BITPACK;
+    }
+
+    /**
+     * Encodes states as base64 text, a cell at a time, into a stream
+     * @param states state of each cell by its row by row index, none negative
+     * @param count number of cells
+     * @param encoding rle or bitpack
+     * @param out stream that receives the text, closed at the end so the last base64 characters are written
+     * @param progress told the fraction of the cells encoded so far, about a hundred times
+     * @throws IOException if the stream can't be written
+     * @throws ConfigurationException if the encoding doesn't exist
+     */
+    public static void encode(IntUnaryOperator states, int count, String encoding, OutputStream out,
+                              DoubleConsumer progress) throws IOException {
+        if (!encoding.equals(RLE) && !encoding.equals(BITPACK)) {
+            throw new ConfigurationException("Invalid initialState encoding.");
+        }
+        try (var bytes = Base64.getMimeEncoder(LINE_LENGTH, LINE_SEPARATOR).wrap(out)) {
+            if (encoding.equals(RLE)) {
+                encodeRuns(states, count, bytes, progress);
+            }
+            else {
+                encodeBits(states, count, bytes, progress);
+            }
+        }
+    }
+
+    /**
+     * Encodes states as base64 text
+     * @param states row by row states of the grid, none negative
+     * @param encoding rle or bitpack
+     * @return base64 text
+     * @throws ConfigurationException if the encoding doesn't exist
+     */
+    public static String encode(int[] states, String encoding) {
+        var text = new ByteArrayOutputStream();
+        try {
+            encode(k -> states[k], states.length, encoding, text, fraction -> { });
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return text.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void encodeRuns(IntUnaryOperator states, int count, OutputStream bytes, DoubleConsumer progress)
+            throws IOException {
+        int step = progressStep(count);
+        int k = 0;
+        while (k < count) {
+            int state = states.applyAsInt(k);
+            int run = 1;
+            while (k + run < count && states.applyAsInt(k + run) == state) {
+                run++;
+            }
+            writeVarint(bytes, state);
+            writeVarint(bytes, run);
+            if ((k + run) / step != k / step) {
+                progress.accept((k + run) / (double) count);
+            }
+            k += run;
+        }
+    }
+
+    private static void encodeBits(IntUnaryOperator states, int count, OutputStream bytes, DoubleConsumer progress)
+            throws IOException {
+        int step = progressStep(count);
+        int max = 0;
+        for (int k = 0; k < count; k++) {
+            max = Math.max(max, states.applyAsInt(k));
+        }
+        int bits = bitsFor(max);
+        writeVarint(bytes, count);
+        bytes.write(bits);
+        long buffer = 0;
+        int filled = 0;
+        for (int k = 0; k < count; k++) {
+            buffer |= (long) states.applyAsInt(k) << filled;
+            filled += bits;
+            while (filled >= Byte.SIZE) {
+                bytes.write((int) buffer);
+                buffer >>>= Byte.SIZE;
+                filled -= Byte.SIZE;
+            }
+            if ((k + 1) % step == 0) {
+                progress.accept((k + 1) / (double) count);
+            }
+        }
+        if (filled > 0) {
+            bytes.write((int) buffer);
+        }
+    }
+
+    private static int progressStep(int count) {
+        return Math.max(1, count / PROGRESS_REPORTS);
+    }
+
+    private static int bitsFor(int max) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(max));
+    }
+
+    /**
+     * Decodes states written by encode(). Whitespace in the text, such as the indentation of the XML file, is ignored.
+     * @param text base64 text
+     * @param encoding rle or bitpack
+     * @return row by row states of the grid
+     * @throws ConfigurationException if the encoding doesn't exist or the text is not valid
+     */
+    public static int[] decode(String text, String encoding) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(text);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ConfigurationException("Invalid initialState encoding.");
+        }
+        var position = new int[1];
+        try {
+            if (encoding.equals(RLE)) {
+                return decodeRuns(bytes, position);
+            }
+            if (encoding.equals(BITPACK)) {
+                return decodeBits(bytes, position);
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            throw new ConfigurationException("Truncated initialState.");
+        }
+        throw new ConfigurationException("Invalid initialState encoding.");
+    }
+
+    private static int[] decodeRuns(byte[] bytes, int[] position) {
+        var states = new int[0];
+        int count = 0;
+        while (position[0] < bytes.length) {
+            int state = readVarint(bytes, position);
+            int run = readVarint(bytes, position);
+            if (run < 0 || count + run < count) {
+                throw new ConfigurationException("Truncated initialState.");
+            }
+            if (count + run > states.length) {
+                states = Arrays.copyOf(states, Math.max(count + run, states.length * 2));
+            }
+            Arrays.fill(states, count, count + run, state);
+            count += run;
+        }
+        return Arrays.copyOf(states, count);
+    }
+
+    private static int[] decodeBits(byte[] bytes, int[] position) {
+        int count = readVarint(bytes, position);
+        int bits = bytes[position[0]++];
+        if (count < 0 || bits < 1 || bits >= Integer.SIZE) {
+            throw new ConfigurationException("Invalid initialState encoding.");
+        }
+        var states = new int[count];
+        int mask = (1 << bits) - 1;
+        long buffer = 0;
+        int filled = 0;
+        for (int k = 0; k < count; k++) {
+            while (filled < bits) {
+                buffer |= (bytes[position[0]++] & 0xFFL) << filled;
+                filled += Byte.SIZE;
+            }
+            states[k] = (int) buffer & mask;
+            buffer >>>= bits;
+            filled -= bits;
+        }
+        return states;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(OutputStream bytes, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            bytes.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new ConfigurationException("Invalid initialState encoding.");
+    }
+}
@@ -1,15 +1,13 @@
 package XMLPackage;
 
-import org.xml.sax.SAXException;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 
 public class Test {
-    public static void main(String [] args) throws ParserConfigurationException, SAXException, IOException, TransformerException {
+    public static void main(String [] args) throws XMLStreamException, IOException {
         XMLParser tester = new XMLParser();
-//        tester.parseGame("GameOfLife.saved.xml");
-//        tester.parseParameters("PredatorPrey.xml");
+//        tester.parse("GameOfLife.saved.xml");
+//        tester.parse("PredatorPrey.xml");
 ////
         XMLWriter writer = new XMLWriter();
 //        writer.saveAsXML("GameOfLife");
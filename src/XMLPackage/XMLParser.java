@@ -2,18 +2,17 @@ package XMLPackage;
 
 import java.util.*;
 
-import org.w3c.dom.Document;
-import javax.xml.parsers.DocumentBuilder;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
-import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 
 /**
- * This class is used to parse XML files for any simulation.  It works by calling the various specific parse
- * methods below, which stores the data into Maps.  Just simply call parseGame, parseCell, or parseParameters,
- * and the appropriate data will be stored in the maps described above.
+ * This class is used to parse XML files for any simulation. It reads the file once from start to end with a
+ * streaming XMLStreamReader, without building a tree of the document, and sorts every property it meets into the
+ * game, cell and parameter Maps. The states of a saved grid are read straight into an int array, since a saved file
+ * holds one state per cell. Just call parse, then get the Maps and states with the getters below.
  *
  * @author Bryant Huang
  */
@@ -22,15 +21,18 @@ public class XMLParser{
 
     String pathStart = "data/";
 
-    private NodeList rootList;
-    private NodeList subList;
+    private static final String INITIAL_STATE = "initialState";
+    private static final String OPTION = "option";
+    private static final int INITIAL_CAPACITY = 1024;
+
     private Map<String, ArrayList<String>> gameConfigMap = new HashMap<>();
     private Map<String, ArrayList<Double>> cellConfigMap = new HashMap<>();
     private Map<String, ArrayList<String>> parameterMap = new HashMap<>();
+    private int[] initialStates;
 
     private ArrayList<String> cellProperties = new ArrayList<>(List.of("stateProb", "states", "rows", "columns", "width", "height"));
     private ArrayList<String> gameProperties = new ArrayList<>(List.of("title", "author", "cellShape", "gridShape", "colors", "numColors",
-            "neighbors", "initialState"));
+            "neighbors"));
     private ArrayList<String> parameterProperties = new ArrayList<>(List.of("parameters", "states"));
 
     public XMLParser(){
@@ -38,141 +40,142 @@ public class XMLParser{
     }
 
     /**
-     * This method parses the game properties, all of which specified by the gameProperties ArrayList above
+     * This method parses the whole file in a single pass. Every child of the root is a property: the ones named in
+     * gameProperties and cellProperties are stored with their text, or the text of each of their children if they
+     * have any, and the children of the ones named in parameterProperties are stored as parameters by their own name.
      * @param fileName name of file being parsed
-     * @return Map of the game properties, with Strings for keys
-     * @throws IOException
-     * @throws SAXException
-     * @throws ParserConfigurationException
+     * @throws IOException if the file can't be read
+     * @throws XMLStreamException if the file is not well formed XML
      */
-    public Map <String, ArrayList<String>> parseGame(String fileName) throws IOException, SAXException, ParserConfigurationException {
-            initializeParser(fileName);
-            for (int i = 0; i < rootList.getLength(); i++) {
-                Node node = rootList.item(i);
-                if (gameProperties.contains(node.getNodeName())) {
-                    if (node.getNodeType() == Node.ELEMENT_NODE) {
-                        gameConfigMap.put(node.getNodeName(), new ArrayList<>());
-                        subList = node.getChildNodes();
-                        if (subList.getLength() > 1) {
-                            parseGameChildren(node, subList, gameConfigMap);
-                        }
-                        else
-                            gameConfigMap.get(node.getNodeName()).add(node.getTextContent());
-                    }
+    public void parse(String fileName) throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        try (var input = new BufferedInputStream(new FileInputStream(pathStart + fileName))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                reader.nextTag();
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    parseProperty(reader);
                 }
             }
-            return gameConfigMap;
-    }
-
-    /**
-     * This method parses the game properties, all of which specified by the cellProperties ArrayList above.
-     * @param fileName name of the file being parsed.
-     * @return Map of cell properties, with Strings for keys.
-     * @throws IOException
-     * @throws SAXException
-     * @throws ParserConfigurationException
-     */
-    public Map <String, ArrayList<Double>> parseCell(String fileName) throws IOException, SAXException, ParserConfigurationException {
-        initializeParser(fileName);
-        for (int i = 0; i < rootList.getLength(); i++) {
-            Node node = rootList.item(i);
-            if (cellProperties.contains(node.getNodeName())) {
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    cellConfigMap.put(node.getNodeName(), new ArrayList<>());
-                    subList = node.getChildNodes();
-                    if (subList.getLength() > 1) {
-                        parseCellChildren(node, subList, cellConfigMap);
-                    }
-                    else {
-                        cellConfigMap.get(node.getNodeName()).add(Double.parseDouble(node.getTextContent()));
-                    }
-                }
+            finally {
+                reader.close();
             }
         }
-        return cellConfigMap;
     }
 
     /**
-     * This method parses the parameter properties, all of which specified by the paramProperties ArrayList above.
-     * @param fileName name of file being parsed
-     * @return Map of cell properties, with Strings for keys.
-     * @throws IOException
-     * @throws SAXException
-     * @throws ParserConfigurationException
+     * Parses one child of the root, leaving the reader on its end tag
+     * @param reader reader positioned on the start tag of the property
+     * @throws XMLStreamException if the file is not well formed XML
      */
-    public Map<String, ArrayList<String>> parseParameters(String fileName) throws IOException, SAXException, ParserConfigurationException {
-        initializeParser(fileName);
-        for (int i = 0; i < rootList.getLength(); i++) {
-            Node node = rootList.item(i);
-            if (parameterProperties.contains(node.getNodeName())) {
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    subList = node.getChildNodes();
-                    for (int k = 0; k < subList.getLength(); k++){
-                        Node subNode  = subList.item(k);
-                        if (subNode.getNodeType() == Node.ELEMENT_NODE && !((subNode.getNodeName()).equals("option"))){
-                            if (!parameterMap.containsKey(subNode.getNodeName())) {
-                                parameterMap.put(subNode.getNodeName(), new ArrayList<>());
-                            }
-                            (parameterMap.get(subNode.getNodeName())).add(subNode.getTextContent());
-                        }
-                    }
-
+    private void parseProperty(XMLStreamReader reader) throws XMLStreamException {
+        String name = reader.getLocalName();
+        if (name.equals(INITIAL_STATE)) {
+            parseInitialStates(reader);
+            return;
+        }
+        if (gameProperties.contains(name)) {
+            gameConfigMap.put(name, new ArrayList<>());
+        }
+        if (cellProperties.contains(name)) {
+            cellConfigMap.put(name, new ArrayList<>());
+        }
+        var text = new StringBuilder();
+        boolean hasChildren = false;
+        while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+            if (reader.isStartElement()) {
+                hasChildren = true;
+                String childName = reader.getLocalName();
+                String childText = readText(reader);
+                store(name, childText);
+                if (parameterProperties.contains(name) && !childName.equals(OPTION)) {
+                    parameterMap.computeIfAbsent(childName, k -> new ArrayList<>()).add(childText);
                 }
             }
+            else if (reader.isCharacters()) {
+                text.append(reader.getText());
+            }
         }
-        return parameterMap;
+        if (!hasChildren) {
+            store(name, text.toString());
+        }
+    }
 
+    private void store(String name, String text) {
+        if (gameProperties.contains(name)) {
+            gameConfigMap.get(name).add(text);
+        }
+        if (cellProperties.contains(name)) {
+            cellConfigMap.get(name).add(Double.parseDouble(text));
+        }
     }
 
     /**
-     * Parses the children of any children nodes of the Game. This is necessary to fully parsed all the information
-     * in the XML and prevent missing out on nodes with multiple children nodes.
-     *
-     * @param node the node who's children nodes are being parsed.
-     * @param subList The list of nodes that have children nodes needed to be parsed as well.
-     * @param map the map of the game configuration
+     * Reads the states of a saved grid into initialStates. They are either a block of text in the encoding named by
+     * the encoding attribute, see StateEncoding, or one child per cell in row by row order.
+     * @param reader reader positioned on the start tag of initialState
+     * @throws XMLStreamException if the file is not well formed XML
      */
-    public void parseGameChildren(Node node, NodeList subList, Map<String, ArrayList<String>> map){
-        for (int k = 0; k < subList.getLength(); k++) {
-            Node subNode = subList.item(k);
-                if (subNode.getNodeType() == Node.ELEMENT_NODE) {
-                    map.get(node.getNodeName()).add(subNode.getTextContent());               }
+    private void parseInitialStates(XMLStreamReader reader) throws XMLStreamException {
+        String encoding = reader.getAttributeValue(null, StateEncoding.ENCODING);
+        if (encoding != null) {
+            initialStates = StateEncoding.decode(readText(reader), encoding);
+            return;
+        }
+        var states = new int[INITIAL_CAPACITY];
+        int count = 0;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (count == states.length) {
+                states = Arrays.copyOf(states, count * 2);
+            }
+            states[count++] = Integer.parseInt(readText(reader).trim());
         }
+        initialStates = Arrays.copyOf(states, count);
     }
+
     /**
-     * Parses the children of any children nodes of the cell properites. This is necessary to fully parsed all the information
-     * in the XML and prevent missing out on nodes with multiple children nodes.
-     *
-     * @param node the node who's children nodes are being parsed.
-     * @param subList The list of nodes that have children nodes needed to be parsed as well.
-     * @param map the map of the cell configuration
+     * Returns all the text inside an element, like the text content of a DOM node, leaving the reader on its end tag
+     * @param reader reader positioned on the start tag of the element
+     * @return the text of the element and its children
+     * @throws XMLStreamException if the file is not well formed XML
      */
-    public void parseCellChildren(Node node, NodeList subList, Map<String, ArrayList<Double>> map){
-        for (int k = 0; k < subList.getLength(); k++) {
-            Node subNode = subList.item(k);
-            if (subNode.getNodeType() == Node.ELEMENT_NODE) {
-                if (node.getNodeName().equals("initialState") && !((map.get("states")).contains(Double.parseDouble(subNode.getTextContent())))) {
-                    throw new IndexOutOfBoundsException("Invalid states.");
-                }
-                map.get(node.getNodeName()).add(Double.parseDouble(subNode.getTextContent()));
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        var text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            else if (reader.isCharacters()) {
+                text.append(reader.getText());
             }
         }
+        return text.toString();
+    }
+
+    public Map<String, ArrayList<String>> getGameConfig() {
+        return gameConfigMap;
+    }
+
+    public Map<String, ArrayList<Double>> getCellConfig() {
+        return cellConfigMap;
+    }
+
+    public Map<String, ArrayList<String>> getParameters() {
+        return parameterMap;
     }
 
     /**
-     * This method initializes the parser root and parses the document into a tree type structure with nodes
-     * containing all the information, which we then parse through with the methods written.
-     * @param fileName name of file to be parsed.
-     * @throws ParserConfigurationException
-     * @throws IOException
-     * @throws SAXException
+     * Returns the states of a saved grid
+     * @return row by row states, or null if the file has no initialState
      */
-    public void initializeParser(String fileName) throws ParserConfigurationException, IOException, SAXException {
-        File inputFile = new File(pathStart + fileName);
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(inputFile);
-        rootList = doc.getDocumentElement().getChildNodes();
+    public int[] getInitialStates() {
+        return initialStates;
     }
 }
-
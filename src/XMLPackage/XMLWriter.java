@@ -1,14 +1,22 @@
 package XMLPackage;
 
 import Grid.CellSpace;
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.File;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleConsumer;
 
 /**
  * This class is utilized for the XML writer, which writes the current state of any simulation along with its
@@ -16,260 +24,319 @@ import java.util.Map;
  * It depends and assumes that the simulation and its maps of configuration data are all valid and contain the
  * necessary information necessary to pass along to a saved state of the configuration.
  *
+ * The file is written from start to end through an XMLStreamWriter into a buffered stream, and the states of the
+ * cells are encoded one at a time as they are read, so the document is never built in memory. A GridSnapshot does
+ * copy the state of every cell into an int array, which saveInBackground() then writes on a background thread
+ * instead of the caller's.
+ *
  * @author Bryant Huang
  */
 public class XMLWriter {
 
     String pathStart = "data/";
 
+    private static final String ENCODING = "UTF-8";
+    private static final String INDENT = "    ";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final ExecutorService SAVER = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "XMLWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
-     * This method saves the XML file, calling multiple helper method to write various different parts
+     * This method saves the XML file from the cells as they are now, on the calling thread
      * @param fileName name of file
      * @param myCellSpace the CellSpace that contains all states of cells
      * @param gameConfig map of game configuration
      * @param cellConfig map of cell configuration
      * @param parameterConfig map of parameter configuration
-     * @throws ParserConfigurationException
-     * @throws TransformerException
+     * @throws IOException
+     * @throws XMLStreamException
      */
-    public void saveAsXML (String fileName, CellSpace[][] myCellSpace, Map gameConfig, Map cellConfig, Map parameterConfig) throws ParserConfigurationException, TransformerException {
-        Map <String, ArrayList<String>> gameInfo = gameConfig;
-        Map <String, ArrayList<Double>> cellInfo = cellConfig;
-        Map <String, ArrayList<String>> params = parameterConfig;
+    public void saveAsXML (String fileName, CellSpace[][] myCellSpace, Map<String, ArrayList<String>> gameConfig,
+                           Map<String, ArrayList<Double>> cellConfig, Map<String, ArrayList<String>> parameterConfig)
+            throws IOException, XMLStreamException {
+        int cols = myCellSpace[0].length;
+        var states = new int[myCellSpace.length * cols];
+        for (int i = 0; i < myCellSpace.length; i++) {
+            for (int j = 0; j < cols; j++) {
+                states[i * cols + j] = myCellSpace[i][j].getCell().getState();
+            }
+        }
+        saveAsXML(new GridSnapshot(fileName, states, gameConfig, cellConfig, parameterConfig), fraction -> { });
+        System.out.println("File Saved");
+    }
 
-        DocumentBuilderFactory factory= DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.newDocument();
+    /**
+     * This method saves a snapshot as an XML file, calling multiple helper method to write various different parts
+     * @param snapshot copy of the simulation to save
+     * @param progress told the fraction of the cells written so far
+     * @return path of the saved file
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public String saveAsXML(GridSnapshot snapshot, DoubleConsumer progress) throws IOException, XMLStreamException {
+        Map <String, ArrayList<String>> gameInfo = snapshot.getGameConfig();
+        Map <String, ArrayList<Double>> cellInfo = snapshot.getCellConfig();
+        Map <String, ArrayList<String>> params = snapshot.getParameters();
+        String path = pathStart + "s_" + snapshot.getName() + ".xml";
 
-        Element root = doc.createElement("config");
-        doc.appendChild(root);
+        try (var out = new BufferedOutputStream(Files.newOutputStream(Paths.get(path)), BUFFER_SIZE)) {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, ENCODING);
+            xml.writeStartDocument(ENCODING, "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("config");
 
-        writeGameConfig(root,doc,gameInfo,fileName);
-        writeCellConfig(root, doc, cellInfo, myCellSpace, params);
-        writeParameters(root,doc,params);
+            writeGameConfig(xml,gameInfo,snapshot.getName());
+            writeCellConfig(xml, cellInfo, snapshot, params, progress);
+            writeParameters(xml,params);
 
-        convertToFile(doc,fileName);
-        System.out.println("File Saved");
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        }
+        return path;
+    }
+
+    /**
+     * This method saves a snapshot on a background thread and returns right away, so that the user interface doesn't
+     * freeze while a large grid is written. Saves run one at a time in the order they were asked for.
+     * @param snapshot copy of the simulation to save, which the caller must not change
+     * @param listener told about the progress and the end of the save, on the background thread
+     * @return the pending save
+     */
+    public Future<?> saveInBackground(GridSnapshot snapshot, SaveListener listener) {
+        return SAVER.submit(() -> {
+            try {
+                listener.saved(saveAsXML(snapshot, listener::progress));
+            }
+            catch (IOException | XMLStreamException | RuntimeException e) {
+                listener.failed(e);
+            }
+        });
     }
 
     /**
      * This method writes the game configuration of the simulation, assuming all helper methods wrote properly
      * in gathering the necessary information.
-     * @param root the root of the XML where information is saved to
-     * @param doc the Document object that is the structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param gameInfo map containing information of the game
      * @param fileName name of file
+     * @throws XMLStreamException
      */
-    public void writeGameConfig(Element root, Document doc, Map <String, ArrayList<String>> gameInfo, String fileName){
-        writeTitleAndAuthor(root,doc,fileName,gameInfo);
-        writeShapes(root,doc,gameInfo);
-        writeColors(root,doc,gameInfo);
-        writeNeighbors(root,doc,gameInfo);
+    public void writeGameConfig(XMLStreamWriter xml, Map <String, ArrayList<String>> gameInfo, String fileName) throws XMLStreamException {
+        writeTitleAndAuthor(xml,fileName,gameInfo);
+        writeShapes(xml,gameInfo);
+        writeColors(xml,gameInfo);
+        writeNeighbors(xml,gameInfo);
     }
 
     /**
      * This method writes the cell configuration of the simulation, assuming all helper methods wrote properly
      * in gathering the necessary information.
-     * @param root the root of the XML file where information is saved to
-     * @param doc the Document object that is the structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param cellInfo map containing information of the game
-     * @param myCellSpace Cell Space that contains all the shapes of cells
+     * @param snapshot copy of the simulation holding the states of the cells
      * @param params map containing other relevant information pertaining to cells
+     * @param progress told the fraction of the cells written so far
+     * @throws XMLStreamException
      */
-    public void writeCellConfig(Element root, Document doc, Map <String, ArrayList<Double>> cellInfo, CellSpace[][] myCellSpace, Map <String, ArrayList<String>> params){
-        writeProbabilities(root, cellInfo, doc);
-        writeStates(root,cellInfo,doc,params);
-        writeInitialStates(root,doc,myCellSpace);
-        writeCellParameters(root, doc, cellInfo);
-        writeGridParameters(root, doc, cellInfo);
+    public void writeCellConfig(XMLStreamWriter xml, Map <String, ArrayList<Double>> cellInfo, GridSnapshot snapshot, Map <String, ArrayList<String>> params, DoubleConsumer progress) throws XMLStreamException {
+        writeProbabilities(xml, cellInfo);
+        writeStates(xml,cellInfo,params);
+        writeInitialStates(xml,snapshot.getStates(),progress);
+        writeCellParameters(xml, cellInfo);
+        writeGridParameters(xml, cellInfo);
     }
 
     /**
      * This method writes any miscellaneous parameters that are simulation specific and unique.
-     * @param root the root of the XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param params map containing parameters of relevant simulation information
+     * @throws XMLStreamException
      */
-    public void writeParameters(Element root, Document doc, Map <String, ArrayList<String>> params){
-        Element parameters= doc.createElement("parameters");
-        root.appendChild(parameters);
+    public void writeParameters(XMLStreamWriter xml, Map <String, ArrayList<String>> params) throws XMLStreamException {
+        startElement(xml, "parameters", 1);
         for (String key : params.keySet()){
             for (int k =0; k < params.get(key).size(); k++) {
-                Element param = doc.createElement(key);
-                param.appendChild(doc.createTextNode(String.valueOf(params.get(key).get(k))));
-                parameters.appendChild(param);
+                writeElement(xml, key, String.valueOf(params.get(key).get(k)), 2);
             }
 
         }
-    }
-
-    /**
-     * This method converts the written Document into an actual XML file. It depends on the entire creation
-     * of the file being successful and information being accurately written.
-     * @param doc Document object that is structure of the XML
-     * @param fileName name of the file
-     * @throws TransformerException
-     */
-    public void convertToFile(Document doc, String fileName) throws TransformerException {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        transformerFactory.setAttribute("indent-number", 4);
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        DOMSource source = new DOMSource(doc);
-        StreamResult result = new StreamResult(new File(pathStart + "s_" + fileName + ".xml"));
-        transformer.transform(source, result);
+        endElement(xml, 1);
     }
 
     /**
      * This method writes the given state probabilities per simulation, writing probabilities for each state.
-     * @param root root of the XML file where information is saved to
+     * @param xml the writer of the XML file, inside its root
      * @param cellInfo map containing information about cell configuration
-     * @param doc Document object that is structure of the XML
+     * @throws XMLStreamException
      */
-    public void writeProbabilities(Element root, Map<String, ArrayList<Double>> cellInfo, Document doc){
-        Element stateProb = doc.createElement("stateProb");
-        root.appendChild(stateProb);
+    public void writeProbabilities(XMLStreamWriter xml, Map<String, ArrayList<Double>> cellInfo) throws XMLStreamException {
+        startElement(xml, "stateProb", 1);
         for (int i = 0; i < cellInfo.get("stateProb").size(); i++) {
-            Element prob = doc.createElement("prob");
-            prob.appendChild(doc.createTextNode(String.valueOf((cellInfo.get("stateProb")).get(i))));
-            stateProb.appendChild(prob);
+            writeElement(xml, "prob", String.valueOf((cellInfo.get("stateProb")).get(i)), 2);
         }
+        endElement(xml, 1);
     }
 
     /**
      * This method saves all the option of states to the XML.
-     * @param root root of the XML file where information is saved to
+     * @param xml the writer of the XML file, inside its root
      * @param cellInfo map containing information about cell configuration
-     * @param doc Document object that is structure of the XML
      * @param params map containing information about relevant parameters to the simulation
+     * @throws XMLStreamException
      */
-    public void writeStates(Element root, Map<String, ArrayList<Double>> cellInfo, Document doc,Map<String, ArrayList<String>> params ){
-        Element states = doc.createElement("states");
-        root.appendChild(states);
+    public void writeStates(XMLStreamWriter xml, Map<String, ArrayList<Double>> cellInfo, Map<String, ArrayList<String>> params) throws XMLStreamException {
+        startElement(xml, "states", 1);
         for (int i = 0; i < (cellInfo.get("states")).size(); i++) {
-            Element option = doc.createElement("option");
-            option.appendChild(doc.createTextNode(String.valueOf(cellInfo.get("states").get(i))));
-            option.setAttribute("name", params.get("name").get(i));
-            states.appendChild(option);
+            startElement(xml, "option", 2);
+            xml.writeAttribute("name", params.get("name").get(i));
+            xml.writeCharacters(String.valueOf(cellInfo.get("states").get(i)));
+            xml.writeEndElement();
         }
+        endElement(xml, 1);
     }
 
     /**
-     * This method writes all the saved states of the cells into the XML file.  It writes each individual state
-     * of each cell.
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
-     * @param myCellSpace Cell Space that contains all the shapes of cells
+     * This method writes all the saved states of the cells into the XML file. They are written row by row as a single
+     * block of text in whichever StateEncoding is shorter, named by the encoding attribute, instead of one element
+     * per cell.
+     * @param xml the writer of the XML file, inside its root
+     * @param states row by row states of the cells
+     * @param progress told the fraction of the cells written so far
+     * @throws XMLStreamException
      */
-    public void writeInitialStates(Element root, Document doc, CellSpace[][] myCellSpace){
-        Element initialState = doc.createElement("initialState");
-        root.appendChild(initialState);
-        for (int i = 0; i < myCellSpace.length; i++) {
-            for (int j = 0; j < myCellSpace[i].length; j++) {
-                Element state = doc.createElement("state");
-                state.appendChild(doc.createTextNode(String.valueOf(myCellSpace[i][j].getCell().getState())));
-                state.setAttribute("i", String.valueOf(i));
-                state.setAttribute("j", String.valueOf(j));
-                initialState.appendChild(state);
-            }
+    public void writeInitialStates(XMLStreamWriter xml, int[] states, DoubleConsumer progress) throws XMLStreamException {
+        String encoding = StateEncoding.chooseEncoding(k -> states[k], states.length);
+        startElement(xml, "initialState", 1);
+        xml.writeAttribute(StateEncoding.ENCODING, encoding);
+        xml.writeCharacters("\n");
+        try {
+            StateEncoding.encode(k -> states[k], states.length, encoding,
+                    new BufferedOutputStream(new CharacterStream(xml), BUFFER_SIZE), progress);
+        }
+        catch (IOException e) {
+            throw new XMLStreamException(e);
         }
+        endElement(xml, 1);
     }
 
     /**
      * THie method writes the parameters of the cell, such as the width and the height.
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param cellInfo map containing information about cell configuration
+     * @throws XMLStreamException
      */
-    public void writeCellParameters(Element root, Document doc, Map<String, ArrayList<Double>> cellInfo){
-        Element width = doc.createElement("width");
-        width.appendChild(doc.createTextNode(String.valueOf((cellInfo.get("width")).get(0))));
-        root.appendChild(width);
-
-        Element height = doc.createElement("height");
-        height.appendChild(doc.createTextNode(String.valueOf((cellInfo.get("height")).get(0))));
-        root.appendChild(height);
+    public void writeCellParameters(XMLStreamWriter xml, Map<String, ArrayList<Double>> cellInfo) throws XMLStreamException {
+        writeElement(xml, "width", String.valueOf((cellInfo.get("width")).get(0)), 1);
+        writeElement(xml, "height", String.valueOf((cellInfo.get("height")).get(0)), 1);
     }
 
     /**
      * This method writes the parameters of the grid, such as its columns and rows
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param cellInfo map containing information about cell configuration
+     * @throws XMLStreamException
      */
-    public void writeGridParameters(Element root, Document doc, Map <String, ArrayList<Double>> cellInfo){
-        Element columns = doc.createElement("columns");
-        columns.appendChild(doc.createTextNode(String.valueOf((cellInfo.get("columns")).get(0))));
-        root.appendChild(columns);
-
-        Element rows = doc.createElement("rows");
-        rows.appendChild(doc.createTextNode(String.valueOf((cellInfo.get("rows")).get(0))));
-        root.appendChild(rows);
+    public void writeGridParameters(XMLStreamWriter xml, Map <String, ArrayList<Double>> cellInfo) throws XMLStreamException {
+        writeElement(xml, "columns", String.valueOf((cellInfo.get("columns")).get(0)), 1);
+        writeElement(xml, "rows", String.valueOf((cellInfo.get("rows")).get(0)), 1);
     }
 
     /**
      * Writes the title and author of the XML file.
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param fileName name of the file
      * @param gameInfo map containing information about game configuration
+     * @throws XMLStreamException
      */
-    public void writeTitleAndAuthor(Element root, Document doc, String fileName, Map<String, ArrayList<String>> gameInfo) {
-        Element title = doc.createElement("title");
-        title.appendChild(doc.createTextNode(fileName));
-        root.appendChild(title);
-        Element author = doc.createElement("author");
-        author.appendChild(doc.createTextNode((gameInfo.get("author")).get(0)));
-        root.appendChild(author);
+    public void writeTitleAndAuthor(XMLStreamWriter xml, String fileName, Map<String, ArrayList<String>> gameInfo) throws XMLStreamException {
+        writeElement(xml, "title", fileName, 1);
+        writeElement(xml, "author", (gameInfo.get("author")).get(0), 1);
     }
 
     /**
      * This method writes what type of shape the shape in any given simulation is.  This is important because
      * it determines how the simulation runs and visualization of the grid.
      *
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param gameInfo map containing information about game configuration
+     * @throws XMLStreamException
      */
-    public void writeShapes(Element root, Document doc, Map<String, ArrayList<String>> gameInfo){
-        Element cellShape = doc.createElement("cellShape");
-        cellShape.appendChild(doc.createTextNode((gameInfo.get("cellShape")).get(0)));
-        root.appendChild(cellShape);
-
-        Element gridShape = doc.createElement("gridShape");
-        gridShape.appendChild(doc.createTextNode((gameInfo.get("gridShape")).get(0)));
-        root.appendChild(gridShape);
+    public void writeShapes(XMLStreamWriter xml, Map<String, ArrayList<String>> gameInfo) throws XMLStreamException {
+        writeElement(xml, "cellShape", (gameInfo.get("cellShape")).get(0), 1);
+        writeElement(xml, "gridShape", (gameInfo.get("gridShape")).get(0), 1);
     }
 
     /**
      * This method writes all the possible colors of the simulation, along with a total number of colors
      * that the simulation contains.  Accurate visualization depends on this information getting passed through.
-     * @param root
-     * @param doc
-     * @param gameInfo
+     * @param xml the writer of the XML file, inside its root
+     * @param gameInfo map containing information about game configuration
+     * @throws XMLStreamException
      */
-    public void writeColors(Element root, Document doc, Map<String, ArrayList<String>> gameInfo){
-        Element colors = doc.createElement("colors");
-        root.appendChild(colors);
+    public void writeColors(XMLStreamWriter xml, Map<String, ArrayList<String>> gameInfo) throws XMLStreamException {
+        startElement(xml, "colors", 1);
         for (int i = 0; i < gameInfo.get("colors").size(); i++) {
-            Element color = doc.createElement("color");
-            colors.appendChild(color);
-            color.appendChild(doc.createTextNode(String.valueOf(gameInfo.get("colors").get(i))));
+            writeElement(xml, "color", String.valueOf(gameInfo.get("colors").get(i)), 2);
         }
-        Element numColors = doc.createElement("numColors");
-        root.appendChild(numColors);
-        numColors.appendChild(doc.createTextNode(String.valueOf(gameInfo.get("numColors").get(0))));
+        endElement(xml, 1);
+        writeElement(xml, "numColors", String.valueOf(gameInfo.get("numColors").get(0)), 1);
     }
 
     /**
      * This method writes how many neighbors the simulation considers when running its algorithms.
-     * @param root root of XML file where information is saved to
-     * @param doc Document object that is structure of the XML
+     * @param xml the writer of the XML file, inside its root
      * @param gameInfo map containing information about game configuration
+     * @throws XMLStreamException
+     */
+    public void writeNeighbors(XMLStreamWriter xml, Map<String, ArrayList<String>> gameInfo) throws XMLStreamException {
+        writeElement(xml, "neighbors", String.valueOf((gameInfo.get("neighbors")).get(0)), 1);
+    }
+
+    private void startElement(XMLStreamWriter xml, String name, int depth) throws XMLStreamException {
+        xml.writeCharacters("\n" + INDENT.repeat(depth));
+        xml.writeStartElement(name);
+    }
+
+    private void endElement(XMLStreamWriter xml, int depth) throws XMLStreamException {
+        xml.writeCharacters("\n" + INDENT.repeat(depth));
+        xml.writeEndElement();
+    }
+
+    private void writeElement(XMLStreamWriter xml, String name, String text, int depth) throws XMLStreamException {
+        startElement(xml, name, depth);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    /**
+     * Passes the ASCII text written to it on to an XMLStreamWriter as characters, so that StateEncoding can write
+     * its base64 straight into the file. Closing it leaves the XMLStreamWriter open.
      */
-    public void writeNeighbors(Element root, Document doc, Map<String, ArrayList<String>> gameInfo){
-        Element neighbors = doc.createElement("neighbors");
-        neighbors.appendChild(doc.createTextNode(String.valueOf((gameInfo.get("neighbors")).get(0))));
-        root.appendChild(neighbors);
+    private static class CharacterStream extends OutputStream {
+        private XMLStreamWriter myWriter;
+
+        CharacterStream(XMLStreamWriter writer) {
+            myWriter = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            try {
+                myWriter.writeCharacters(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+            }
+            catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
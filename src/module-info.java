@@ -2,6 +2,7 @@ module cellsociety.team11 {
 
     requires javafx.controls;
     requires java.xml;
+    requires static jdk.incubator.vector;
 
     exports RunPackage;
 }
\ No newline at end of file